@@ -1,20 +1,42 @@
-import java.util.Scanner;
+import java.io.IOException;
 
 /**
- *
+ * Sorts the ints on stdin by putting them in a DictBinTree, printing them
+ *   in order
+ * Options "--binary-in" and "--binary-out" read and write ints as 4 bytes
+ *   each, big-endian, instead of text, and "--binary" does both
  * @author me
  */
 public class Treesort {
     public static void main(String[] args) {
-        DictBinTree tree = new DictBinTree();
-        Scanner sc = new Scanner(System.in);
-        while (sc.hasNextInt()) {
-            int i = sc.nextInt();
-            tree.insert(i);
+        boolean binaryIn = false;
+        boolean binaryOut = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "--binary": binaryIn = true; binaryOut = true; break;
+                case "--binary-in": binaryIn = true; break;
+                case "--binary-out": binaryOut = true; break;
+                default:
+                    System.out.println("Unknown option " + arg);
+                    System.exit(1);
+            }
         }
-        
-        for (int i : tree.orderedTraversal()) {
-            System.out.println(i);
+        DictBinTree tree = new DictBinTree();
+        IntReader inp = new IntReader(System.in, binaryIn);
+        IntWriter outp = new IntWriter(System.out, binaryOut);
+        try {
+            while (inp.hasNext()) {
+                int i = inp.next();
+                tree.insert(i);
+            }
+
+            for (int i : tree.orderedTraversal()) {
+                outp.write(i);
+            }
+            outp.flush();
+        } catch (IOException e) {
+            System.out.println("Failed to sort: " + e.getMessage());
+            System.exit(1);
         }
     }
 }
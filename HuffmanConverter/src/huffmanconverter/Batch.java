@@ -0,0 +1,513 @@
+package huffmanconverter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Encodes and decodes many files in a single run, on a pool of workers
+ * Each worker keeps its own buffers and Histogram from file to file,
+ *   so small files cost little more than the work of coding them
+ * Files are encoded in the compact format, either each to a file of its
+ *   own, or all into a single archive laid out as follows:
+ *     int     MAGIC (see Format) with version VERSION_ARCHIVE
+ *     for each file, the file encoded in the compact format
+ *     varint  # of files
+ *     for each file:
+ *       varint  # of bytes of its name
+ *       its name, in UTF-8, with '/' between directories
+ *       long    position of the encoded file in the archive
+ *     long    position of the # of files in the archive
+ * The index at the end lets the files be decoded in parallel
+ * @author me
+ */
+public class Batch {
+    /** A list of files to work on, each with the name it goes by in the output */
+    public static class Inputs {
+        public final List<Path> paths;
+        public final List<String> names;
+
+        public Inputs(List<Path> paths, List<String> names) {
+            this.paths = paths;
+            this.names = names;
+        }
+    }
+
+    /**
+     * Lists the files to work on
+     * @param source A directory, whose files are all listed, "-" for a list
+     *   of files on stdin, or a file holding a list of files, one per line
+     * @return The files, each named by its path relative to the directory,
+     *   or by the path it was listed as
+     */
+    public static Inputs listInputs(String source) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Path sourcePath = Paths.get(source);
+        if (!source.equals("-") && Files.isDirectory(sourcePath)) {
+            try (Stream<Path> walk = Files.walk(sourcePath)) {
+                for (Path path : walk.filter(Files::isRegularFile).sorted()
+                        .collect(Collectors.toList())) {
+                    paths.add(path);
+                    names.add(toName(sourcePath.relativize(path)));
+                }
+            }
+            return new Inputs(paths, names);
+        }
+        InputStream list = source.equals("-") ? System.in : new FileInputStream(source);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(list, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) { continue; }
+                Path path = Paths.get(line);
+                paths.add(path);
+                names.add(toName(path.getRoot() == null ? path : path.getRoot().relativize(path)));
+            }
+        }
+        return new Inputs(paths, names);
+    }
+
+    /** @return A relative path as a name, with '/' between directories */
+    private static String toName(Path path) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : path) {
+            name.append(name.length() == 0 ? "" : "/").append(part);
+        }
+        return name.toString();
+    }
+
+    /**
+     * @return Where a named file goes under an output directory
+     * @throws IOException If the name would take it outside the directory
+     */
+    private static Path resolve(Path outDir, String name) throws IOException {
+        Path out = outDir.resolve(name).normalize();
+        if (!out.startsWith(outDir.normalize()) || out.equals(outDir.normalize())) {
+            throw new IOException("Name " + name + " leads outside the output directory");
+        }
+        return out;
+    }
+
+    /** The buffers a worker thread reuses from file to file */
+    private static class Worker {
+        private final Histogram histogram = new Histogram();
+        private final ByteArrayOutputStream encoded = new ByteArrayOutputStream(1 << 16);
+        /** The bytes of the file being worked on */
+        private byte[] data = new byte[1 << 16];
+        /** The decoded bytes of the file being worked on */
+        private byte[] decoded = new byte[1 << 16];
+
+        /**
+         * Reads a whole file into data
+         * @return The # of bytes read
+         */
+        int read(Path path) throws IOException {
+            try (FileInputStream inp = new FileInputStream(path.toFile())) {
+                long size = inp.getChannel().size();
+                if (size > Integer.MAX_VALUE - 8) {
+                    throw new IOException("File of " + size + " bytes is too large for batch mode");
+                }
+                ensureData((int) size);
+                int len = 0;
+                int n;
+                while (len < size && (n = inp.read(this.data, len, (int) size - len)) != -1) {
+                    len += n;
+                }
+                return len;
+            }
+        }
+
+        /**
+         * Reads a range of a file into data
+         * @return The # of bytes read
+         */
+        int read(FileChannel channel, long position, long len) throws IOException {
+            if (len > Integer.MAX_VALUE - 8) {
+                throw new IOException("Member of " + len + " bytes is too large for batch mode");
+            }
+            ensureData((int) len);
+            ByteBuffer buf = ByteBuffer.wrap(this.data, 0, (int) len);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0) {
+                    throw new IOException("Unexpected end of archive");
+                }
+            }
+            return (int) len;
+        }
+
+        private void ensureData(int len) {
+            if (this.data.length < len) {
+                this.data = new byte[Math.max(len, 2 * this.data.length)];
+            }
+        }
+
+        /**
+         * Encodes the first len bytes of data in the compact format
+         * @return The encoded bytes, valid until the next call
+         */
+        ByteArrayOutputStream encode(int len, int maxLength) throws IOException {
+            this.histogram.reset();
+            this.histogram.add(this.data, 0, len);
+            long[] byteTable = this.histogram.counts();
+            int[] lengths = Huffman.generateLengths(byteTable, maxLength);
+            long[] codeTable = Huffman.canonicalCodeTable(lengths);
+            this.encoded.reset();
+            BitOutputStream outp = new BitOutputStream(this.encoded);
+            Format.writeHeader(outp, byteTable, lengths);
+            for (int i = 0; i < len; ++i) {
+                long code = codeTable[this.data[i] & 0xFF];
+                outp.writeBits(code >>> 8, (int) code & 0xFF);
+            }
+            outp.close();
+            return this.encoded;
+        }
+
+        /**
+         * Decodes the first len bytes of data, in any format, to a file
+         * @return The # of decoded bytes
+         */
+        long decode(int len, Path out) throws IOException {
+            BitInputStream inp = new BitInputStream(new ByteArrayInputStream(this.data, 0, len));
+            int version = Format.version(inp.peekBits(32));
+            if (version == Format.VERSION_ARCHIVE) {
+                throw new IOException("Archives can't be nested");
+            }
+            try (OutputStream outp = new FileOutputStream(out.toFile())) {
+                if (Format.isBlocks(version)) {
+                    inp.readInt();
+                    CountingOutputStream counted = new CountingOutputStream(outp);
+                    OutputStream buffered = new BufferedOutputStream(counted, 1 << 16);
+                    Blocks.decodeStream(inp, buffered, version);
+                    buffered.flush();
+                    return counted.count();
+                }
+                Format.Header header = Format.readHeader(inp);
+                if (header.numBytes > Integer.MAX_VALUE - 8) {
+                    throw new IOException("File of " + header.numBytes + " bytes is too large for batch mode");
+                }
+                int numBytes = (int) header.numBytes;
+                if (this.decoded.length < numBytes) {
+                    this.decoded = new byte[Math.max(numBytes, 2 * this.decoded.length)];
+                }
+                if (numBytes > 0) {
+                    new TableDecoder(header.tree).decode(inp, this.decoded, 0, numBytes);
+                }
+                outp.write(this.decoded, 0, numBytes);
+                return numBytes;
+            }
+        }
+    }
+
+    /** The work done on a single file by a worker */
+    private interface Task {
+        /**
+         * @param worker The worker's reusable buffers
+         * @param i The index of the file
+         * @return A result for the thread that submitted the work, if any
+         */
+        byte[] run(Worker worker, int i) throws IOException;
+    }
+
+    /** What a run did, for the report at the end */
+    private static class Totals {
+        final long start = System.nanoTime();
+        final AtomicLong bytesIn = new AtomicLong();
+        final AtomicLong bytesOut = new AtomicLong();
+        final AtomicInteger failed = new AtomicInteger();
+
+        /** @return The # of files that failed */
+        int report(String verb, int numFiles) {
+            double seconds = (System.nanoTime() - this.start) / 1e9;
+            int done = numFiles - this.failed.get();
+            System.err.printf(
+                    "\u001B[36m[Info] %s %d files (%.1f MB to %.1f MB) in %.2f s; %.0f files/s%n",
+                    verb, done, this.bytesIn.get() / 1e6, this.bytesOut.get() / 1e6,
+                    seconds, done / seconds);
+            if (this.failed.get() > 0) {
+                System.err.println("\u001B[33m[Warn] " + this.failed.get() + " files failed");
+            }
+            return this.failed.get();
+        }
+    }
+
+    /**
+     * Runs a task on every file, on a pool of workers
+     * A file the task fails on is reported and skipped
+     * @param numFiles The # of files
+     * @param names The name of each file, for reporting failures
+     * @param threads The # of workers
+     * @param totals The totals to count failed files in
+     * @param task The work to do on each file
+     * @param results Called with the result of each file in order,
+     *   on this thread, or null to ignore the results
+     */
+    private static void runAll(int numFiles, List<String> names, int threads,
+            Totals totals, Task task, ResultHandler results) throws IOException {
+        // each worker thread gets its own buffers, kept for the whole run
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        // we keep up to 2 files per worker in flight, so the workers don't
+        //   wait on us, and we don't hold every result in memory
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        int next = 0;
+        try {
+            for (int i = 0; i < numFiles; ++i) {
+                final int file = i;
+                pending.add(pool.submit(() -> {
+                    try {
+                        return task.run(workers.get(), file);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("\u001B[31m[Err] " + names.get(file) + ": " + e.getMessage());
+                        totals.failed.incrementAndGet();
+                        return null;
+                    }
+                }));
+                if (pending.size() >= 2 * threads) {
+                    byte[] result = await(pending.poll());
+                    if (results != null) { results.handle(next, result); }
+                    ++next;
+                }
+            }
+            while (!pending.isEmpty()) {
+                byte[] result = await(pending.poll());
+                if (results != null) { results.handle(next, result); }
+                ++next;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Takes the results of runAll in order */
+    private interface ResultHandler {
+        /**
+         * @param i The index of the file
+         * @param result The result of the file, or null if it failed
+         */
+        void handle(int i, byte[] result) throws IOException;
+    }
+
+    /**
+     * Encodes many files, each to a file of its own
+     * @param inputs The files to encode
+     * @param outDir The directory to write the encoded files to, under their
+     *   names with ".enc" added, or null to write each next to its input,
+     *   skipping inputs that are ".enc" files themselves, so running again
+     *   doesn't encode the last run's output
+     * @param maxLength The max keyword length
+     * @param threads The # of files to encode at the same time
+     * @return The # of files that failed
+     */
+    public static int encode(Inputs inputs, Path outDir, int maxLength,
+            int threads) throws IOException {
+        Inputs files = outDir == null ? skipEncoded(inputs) : inputs;
+        Totals totals = new Totals();
+        runAll(files.paths.size(), files.names, threads, totals, (worker, i) -> {
+            Path out = outDir == null
+                    ? Paths.get(files.paths.get(i) + ".enc")
+                    : resolve(outDir, files.names.get(i) + ".enc");
+            if (out.getParent() != null) { Files.createDirectories(out.getParent()); }
+            int len = worker.read(files.paths.get(i));
+            ByteArrayOutputStream encoded = worker.encode(len, maxLength);
+            try (OutputStream outp = new FileOutputStream(out.toFile())) {
+                encoded.writeTo(outp);
+            }
+            totals.bytesIn.addAndGet(len);
+            totals.bytesOut.addAndGet(encoded.size());
+            return null;
+        }, null);
+        return totals.report("Encoded", files.paths.size());
+    }
+
+    /** @return The inputs that aren't ".enc" files, noting how many were */
+    private static Inputs skipEncoded(Inputs inputs) {
+        List<Path> paths = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < inputs.paths.size(); ++i) {
+            if (inputs.names.get(i).endsWith(".enc")) { continue; }
+            paths.add(inputs.paths.get(i));
+            names.add(inputs.names.get(i));
+        }
+        int skipped = inputs.paths.size() - paths.size();
+        if (skipped > 0) {
+            System.err.println("\u001B[36m[Info] Skipping " + skipped
+                    + " .enc files; give an output directory to encode them");
+        }
+        return new Inputs(paths, names);
+    }
+
+    /**
+     * Encodes many files into a single archive
+     * @param inputs The files to encode
+     * @param archive The archive to write
+     * @param maxLength The max keyword length
+     * @param threads The # of files to encode at the same time
+     * @return The # of files that failed, and were left out of the archive
+     */
+    public static int encodeArchive(Inputs inputs, String archive, int maxLength,
+            int threads) throws IOException {
+        Totals totals = new Totals();
+        List<String> names = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        try (OutputStream outp = new BufferedOutputStream(new FileOutputStream(archive), 1 << 16)) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            BitOutputStream headerOutp = new BitOutputStream(header);
+            Format.writeMagic(headerOutp, Format.VERSION_ARCHIVE);
+            headerOutp.close();
+            header.writeTo(outp);
+            final long[] position = { header.size() };
+
+            // the workers hand back copies of their encodings, which we
+            //   write in order as they come in
+            runAll(inputs.paths.size(), inputs.names, threads, totals, (worker, i) -> {
+                int len = worker.read(inputs.paths.get(i));
+                totals.bytesIn.addAndGet(len);
+                return worker.encode(len, maxLength).toByteArray();
+            }, (i, encoded) -> {
+                if (encoded == null) { return; }
+                names.add(inputs.names.get(i));
+                positions.add(position[0]);
+                outp.write(encoded);
+                position[0] += encoded.length;
+                totals.bytesOut.addAndGet(encoded.length);
+            });
+
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            BitOutputStream indexOutp = new BitOutputStream(index);
+            Format.writeVarLong(indexOutp, names.size());
+            for (int i = 0; i < names.size(); ++i) {
+                byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                Format.writeVarLong(indexOutp, name.length);
+                for (byte b : name) {
+                    indexOutp.writeBits(b & 0xFF, 8);
+                }
+                Format.writeLong(indexOutp, positions.get(i));
+            }
+            Format.writeLong(indexOutp, position[0]);
+            indexOutp.close();
+            index.writeTo(outp);
+        }
+        return totals.report("Archived", inputs.paths.size());
+    }
+
+    /**
+     * Decodes many files, each from a file of its own
+     * @param inputs The files to decode
+     * @param outDir The directory to write the decoded files to, under their
+     *   names without ".enc", or null to write each next to its input
+     * @param threads The # of files to decode at the same time
+     * @return The # of files that failed
+     */
+    public static int decode(Inputs inputs, Path outDir, int threads) throws IOException {
+        Totals totals = new Totals();
+        runAll(inputs.paths.size(), inputs.names, threads, totals, (worker, i) -> {
+            String name = outDir == null ? inputs.paths.get(i).toString() : inputs.names.get(i);
+            name = name.endsWith(".enc")
+                    ? name.substring(0, name.length() - ".enc".length())
+                    : name + ".dec";
+            Path out = outDir == null ? Paths.get(name) : resolve(outDir, name);
+            if (out.getParent() != null) { Files.createDirectories(out.getParent()); }
+            int len = worker.read(inputs.paths.get(i));
+            totals.bytesIn.addAndGet(len);
+            totals.bytesOut.addAndGet(worker.decode(len, out));
+            return null;
+        }, null);
+        return totals.report("Decoded", inputs.paths.size());
+    }
+
+    /** @return Whether a file is an archive */
+    public static boolean isArchive(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        if (!Files.isRegularFile(path) || Files.size(path) < 4) { return false; }
+        try (InputStream inp = new FileInputStream(filename)) {
+            return Format.version(new BitInputStream(inp).readInt()) == Format.VERSION_ARCHIVE;
+        }
+    }
+
+    /**
+     * Decodes every file of an archive
+     * @param archive The archive to decode
+     * @param outDir The directory to write the decoded files to, under their names
+     * @param threads The # of files to decode at the same time
+     * @return The # of files that failed
+     */
+    public static int decodeArchive(String archive, Path outDir, int threads) throws IOException {
+        Totals totals = new Totals();
+        try (RandomAccessFile file = new RandomAccessFile(archive, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < 12) {
+                throw new IOException("File too small to be an archive");
+            }
+            long indexPosition = ByteBuffer.wrap(Blocks.read(channel, size - 8, 8)).getLong();
+            if (indexPosition < 4 || indexPosition > size - 8) {
+                throw new IOException("Invalid archive index position " + indexPosition);
+            }
+            BitInputStream inp = new BitInputStream(new ByteArrayInputStream(
+                    Blocks.read(channel, indexPosition, (int) (size - 8 - indexPosition))));
+            int numFiles = (int) Format.readVarLong(inp);
+            List<String> names = new ArrayList<>();
+            // file i spans from its position to the next one's
+            long[] positions = new long[numFiles + 1];
+            for (int i = 0; i < numFiles; ++i) {
+                byte[] name = new byte[(int) Format.readVarLong(inp)];
+                for (int j = 0; j < name.length; ++j) {
+                    name[j] = (byte) inp.readBits(8);
+                }
+                names.add(new String(name, StandardCharsets.UTF_8));
+                positions[i] = Format.readLong(inp);
+            }
+            positions[numFiles] = indexPosition;
+
+            runAll(numFiles, names, threads, totals, (worker, i) -> {
+                if (positions[i] > positions[i + 1]) {
+                    throw new IOException("Invalid position in the archive index");
+                }
+                Path out = resolve(outDir, names.get(i));
+                if (out.getParent() != null) { Files.createDirectories(out.getParent()); }
+                int len = worker.read(channel, positions[i], positions[i + 1] - positions[i]);
+                totals.bytesIn.addAndGet(len);
+                totals.bytesOut.addAndGet(worker.decode(len, out));
+                return null;
+            }, null);
+            return totals.report("Extracted", numFiles);
+        }
+    }
+
+    /** Waits for a file, passing on any exception it threw */
+    private static byte[] await(Future<byte[]> file) throws IOException {
+        try {
+            return file.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a file", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
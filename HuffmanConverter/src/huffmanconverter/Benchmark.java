@@ -0,0 +1,358 @@
+package huffmanconverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the throughput of each stage of the converter
+ * Runs every benchmark over the files of the test corpus and over
+ *   generated large and random inputs, with warmup iterations first
+ *   so the JIT has compiled the code being measured
+ * Results are written as JSON in the layout JMH uses, so the same
+ *   tooling can compare runs and catch regressions; the primary metric
+ *   is MB/s of input, or ops/s for benchmarks that only use the byte
+ *   table, whose work doesn't grow with the input
+ * @author me
+ */
+public class Benchmark {
+    /** Something each benchmark feeds its result into, so it can't be optimized away */
+    private static volatile long sink;
+
+    /** A single operation to measure, run over one input */
+    private interface Op {
+        void run(byte[] data) throws IOException;
+    }
+
+    /** A named operation to measure */
+    private static class Bench {
+        final String name;
+        final Op op;
+        /** Whether the operation only uses the byte table, not the input itself */
+        final boolean tableOnly;
+
+        Bench(String name, Op op) {
+            this(name, op, false);
+        }
+
+        Bench(String name, Op op, boolean tableOnly) {
+            this.name = name;
+            this.op = op;
+            this.tableOnly = tableOnly;
+        }
+    }
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 1000;
+    private int generatedSize = 1 << 24;
+    private Pattern filter = Pattern.compile(".*");
+
+    /** @return Every benchmark we know, in the order they are run */
+    private static List<Bench> benchmarks() {
+        List<Bench> benches = new ArrayList<>();
+        benches.add(new Bench("histogram", data -> {
+            Histogram histogram = new Histogram();
+            histogram.add(data, 0, data.length);
+            sink += histogram.counts()[0];
+        }));
+        // the tree and keyword benchmarks only depend on the byte table,
+        //   which is counted once per run, so they're measured in ops/s
+        benches.add(new Bench("generateTree", data -> {
+            Huffman.Node tree = Huffman.generateTree(preparedTable);
+            sink += tree == null ? 0 : tree.getByte();
+        }, true));
+        benches.add(new Bench("linearCodeLengths", data -> {
+            sink += Huffman.linearCodeLengths(preparedCounts)[0];
+        }, true));
+        benches.add(new Bench("toKeywords", data -> {
+            String[] keywords = Huffman.toKeywords(preparedTree);
+            sink += keywords[0] == null ? 0 : keywords[0].length();
+        }, true));
+        benches.add(new Bench("canonicalCodeTable", data -> {
+            sink += Huffman.canonicalCodeTable(preparedLengths)[0];
+        }, true));
+        benches.add(new Bench("encode", data -> {
+            sink += encode(data).length;
+        }));
+        benches.add(new Bench("decode", data -> {
+            // the input is encoded once per run, see prepare
+            BitInputStream inp = new BitInputStream(new ByteArrayInputStream(preparedEncoding));
+            Format.Header header = Format.readHeader(inp);
+            byte[] decoded = new byte[(int) header.numBytes];
+            new TableDecoder(header.tree).decode(inp, decoded, 0, decoded.length);
+            sink += decoded.length;
+        }));
+        benches.add(new Bench("codec", data -> {
+            // the input as short messages through a pretrained codec
+            ByteBuffer encoded = ByteBuffer.allocate(preparedCodec.maxEncodedLength(MESSAGE_SIZE));
+            ByteBuffer decoded = ByteBuffer.allocate(MESSAGE_SIZE);
+            for (int off = 0; off < data.length; off += MESSAGE_SIZE) {
+                encoded.clear();
+                decoded.clear();
+                preparedCodec.encode(ByteBuffer.wrap(data, off,
+                        Math.min(MESSAGE_SIZE, data.length - off)), encoded);
+                encoded.flip();
+                sink += preparedCodec.decode(encoded, decoded);
+            }
+        }));
+        benches.add(new Bench("writeBit", data -> {
+            BitOutputStream outp = new BitOutputStream(new NullOutputStream());
+            for (byte b : data) {
+                for (int bit = 7; bit >= 0; --bit) {
+                    outp.writeBit(b >>> bit & 1);
+                }
+            }
+            outp.close();
+        }));
+        benches.add(new Bench("readBit", data -> {
+            BitInputStream inp = new BitInputStream(new ByteArrayInputStream(data));
+            long ones = 0;
+            int bit;
+            while ((bit = inp.readBit()) != -1) {
+                ones += bit;
+            }
+            sink += ones;
+        }));
+        return benches;
+    }
+
+    // inputs prepared once per run, so benchmarks only measure their own stage
+    private static byte[] preparedFor;
+    private static long[] preparedCounts;
+    private static int[] preparedTable;
+    private static Huffman.Node preparedTree;
+    private static int[] preparedLengths;
+    private static byte[] preparedEncoding;
+    private static HuffmanCodec preparedCodec;
+    /** The # of bytes per message in the codec benchmark */
+    private static final int MESSAGE_SIZE = 256;
+
+    /**
+     * Counts and encodes an input once, ahead of the benchmarks that need
+     *   it, and builds the tree and keyword lengths the later stages start from
+     */
+    private static void prepare(byte[] data) throws IOException {
+        preparedFor = data;
+        Histogram histogram = new Histogram();
+        histogram.add(data, 0, data.length);
+        preparedCounts = histogram.counts();
+        preparedTable = new int[256];
+        for (int byt = 0; byt < 256; ++byt) {
+            preparedTable[byt] = (int) preparedCounts[byt];
+        }
+        preparedTree = Huffman.generateTree(preparedTable);
+        preparedLengths = Huffman.generateLengths(preparedCounts, Huffman.DEFAULT_MAX_LENGTH);
+        preparedEncoding = encode(data);
+        preparedCodec = new HuffmanCodec(preparedCounts);
+    }
+
+    /** Encodes an input in the compact format, in memory */
+    private static byte[] encode(byte[] data) throws IOException {
+        Histogram histogram = new Histogram();
+        histogram.add(data, 0, data.length);
+        long[] byteTable = histogram.counts();
+        int[] lengths = Huffman.generateLengths(byteTable, Huffman.DEFAULT_MAX_LENGTH);
+        long[] codeTable = Huffman.canonicalCodeTable(lengths);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 64);
+        BitOutputStream outp = new BitOutputStream(bytes);
+        Format.writeHeader(outp, byteTable, lengths);
+        for (byte b : data) {
+            long code = codeTable[b & 0xFF];
+            outp.writeBits(code >>> 8, (int) code & 0xFF);
+        }
+        outp.close();
+        return bytes.toByteArray();
+    }
+
+    /** An OutputStream that drops everything, for measuring bit output alone */
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) { sink += b; }
+
+        @Override
+        public void write(byte[] b, int off, int len) { sink += len; }
+    }
+
+    /**
+     * Runs a benchmark over an input
+     * @return The throughput in MB/s of each measured iteration,
+     *   followed by the throughput in ops/s of each measured iteration
+     */
+    private double[][] measure(Bench bench, byte[] data) throws IOException {
+        double[] mbPerSec = new double[this.iterations];
+        double[] opsPerSec = new double[this.iterations];
+        for (int it = -this.warmupIterations; it < this.iterations; ++it) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long deadline = start + this.iterationMillis * 1000000;
+            long now;
+            do {
+                bench.op.run(data);
+                ++ops;
+                now = System.nanoTime();
+            } while (now < deadline);
+            if (it >= 0) {
+                double seconds = (now - start) / 1e9;
+                opsPerSec[it] = ops / seconds;
+                mbPerSec[it] = ops * (double) data.length / 1e6 / seconds;
+            }
+        }
+        return new double[][] { mbPerSec, opsPerSec };
+    }
+
+    /** @return The inputs to run over; the test corpus, then generated ones */
+    private Map<String, byte[]> inputs(File testDir) throws IOException {
+        Map<String, byte[]> inputs = new LinkedHashMap<>();
+        for (String name : new String[] {"project.txt", "img.jpg", "aaaa.txt", "empty.txt"}) {
+            File file = new File(testDir, name);
+            if (file.isFile()) {
+                inputs.put(name, Files.readAllBytes(file.toPath()));
+            } else {
+                System.err.println("\u001B[33m[Warn] Skipping missing input " + file);
+            }
+        }
+        // large text: the project description repeated
+        byte[] text = inputs.containsKey("project.txt")
+                ? inputs.get("project.txt")
+                : "the quick brown fox jumps over the lazy dog\n".getBytes("UTF-8");
+        byte[] large = new byte[this.generatedSize];
+        for (int i = 0; i < large.length; i += text.length) {
+            System.arraycopy(text, 0, large, i, Math.min(text.length, large.length - i));
+        }
+        inputs.put("large-text", large);
+        // random: every byte equally likely, so nothing compresses
+        byte[] random = new byte[this.generatedSize];
+        new Random(507).nextBytes(random);
+        inputs.put("random", random);
+        return inputs;
+    }
+
+    /** @return The mean of some values */
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) { sum += v; }
+        return sum / values.length;
+    }
+
+    /** @return The half-width of the ~99.9% confidence interval of the mean */
+    private static double error(double[] values) {
+        if (values.length < 2) { return Double.NaN; }
+        double mean = mean(values);
+        double sq = 0;
+        for (double v : values) { sq += (v - mean) * (v - mean); }
+        return 3.29 * Math.sqrt(sq / (values.length - 1)) / Math.sqrt(values.length);
+    }
+
+    /** Appends a metric in the layout of JMH's primaryMetric */
+    private static void appendMetric(StringBuilder json, double[] values, String unit) {
+        json.append("{\"score\": ").append(number(mean(values)))
+                .append(", \"scoreError\": ").append(number(error(values)))
+                .append(", \"scoreUnit\": \"").append(unit)
+                .append("\", \"rawData\": [[");
+        for (int i = 0; i < values.length; ++i) {
+            json.append(i == 0 ? "" : ", ").append(number(values[i]));
+        }
+        json.append("]]}");
+    }
+
+    /** JSON has no NaN, so those become null */
+    private static String number(double value) {
+        return Double.isNaN(value) ? "null" : Double.toString(value);
+    }
+
+    /** Runs every benchmark matching our filter, returning the results as JSON */
+    private String run(File testDir) throws IOException {
+        Map<String, byte[]> inputs = inputs(testDir);
+        StringBuilder json = new StringBuilder("[\n");
+        boolean first = true;
+        for (Bench bench : benchmarks()) {
+            if (!this.filter.matcher(bench.name).find()) { continue; }
+            for (Map.Entry<String, byte[]> input : inputs.entrySet()) {
+                if (preparedFor != input.getValue()) { prepare(input.getValue()); }
+                double[][] scores = measure(bench, input.getValue());
+                if (bench.tableOnly) {
+                    System.err.printf("%-20s %-12s %17s %14.2f ops/s%n",
+                            bench.name, input.getKey(), "-", mean(scores[1]));
+                } else {
+                    System.err.printf("%-20s %-12s %12.2f MB/s %14.2f ops/s%n",
+                            bench.name, input.getKey(), mean(scores[0]), mean(scores[1]));
+                }
+
+                json.append(first ? "" : ",\n");
+                first = false;
+                json.append("  {\"benchmark\": \"huffmanconverter.Benchmark.").append(bench.name)
+                        .append("\", \"mode\": \"thrpt\"")
+                        .append(", \"warmupIterations\": ").append(this.warmupIterations)
+                        .append(", \"measurementIterations\": ").append(this.iterations)
+                        .append(", \"measurementTime\": \"").append(this.iterationMillis).append(" ms\"")
+                        .append(", \"params\": {\"input\": \"").append(input.getKey())
+                        .append("\", \"bytes\": \"").append(input.getValue().length).append("\"}")
+                        .append(", \"primaryMetric\": ");
+                if (bench.tableOnly) {
+                    // MB/s of an input these don't read would mean nothing
+                    appendMetric(json, scores[1], "ops/s");
+                    json.append(", \"secondaryMetrics\": {}}");
+                } else {
+                    appendMetric(json, scores[0], "MB/s");
+                    json.append(", \"secondaryMetrics\": {\"ops\": ");
+                    appendMetric(json, scores[1], "ops/s");
+                    json.append("}}");
+                }
+            }
+        }
+        return json.append("\n]\n").toString();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        Benchmark benchmark = new Benchmark();
+        String outFilename = null;
+        String testDir = "test";
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--warmup") && i + 1 < args.length) {
+                benchmark.warmupIterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--iterations") && i + 1 < args.length) {
+                benchmark.iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--time") && i + 1 < args.length) {
+                benchmark.iterationMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--size") && i + 1 < args.length) {
+                benchmark.generatedSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--filter") && i + 1 < args.length) {
+                benchmark.filter = Pattern.compile(args[++i]);
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                outFilename = args[++i];
+            } else if (args[i].startsWith("--")) {
+                System.out.println("\u001B[31m[Err] Unknown option " + args[i] + "\nUsage:\n"
+                        + "  java Benchmark [--warmup n] [--iterations n] [--time ms] [--size bytes]\n"
+                        + "                 [--filter regex] [--out results.json] [testdir]");
+                return;
+            } else {
+                testDir = args[i];
+            }
+        }
+
+        String json = benchmark.run(new File(testDir));
+        if (outFilename == null) {
+            System.out.print(json);
+        } else {
+            try (PrintStream out = new PrintStream(new FileOutputStream(outFilename), false, "UTF-8")) {
+                out.print(json);
+            }
+        }
+    }
+}
@@ -13,13 +13,21 @@ public class BitInputStream {
     // Underlying byte stream to read from.
     private InputStream input;
 
-    // Buffer of up to 8 bits from the most recently read byte of the
-    // underlying byte input stream. Is an int in the range 0 to 255
-    // if bits are available, or is -1 if the end of stream is
-    // reached.
-    private int nextBits;
-    
-    // Always between 0 and 8, inclusive.
+    // Bytes read in bulk from the underlying stream, and the range of
+    // them not yet moved into bitBuffer.
+    private final byte[] byteBuffer;
+    private int bytePos;
+    private int byteLimit;
+
+    // The number of bytes read from the underlying stream so far.
+    private long bytesRead;
+
+    // Up to 64 bits read ahead of the current position. The next bit
+    // to be read is bit (numBitsRemaining - 1); bits above
+    // numBitsRemaining are stale and must be masked off.
+    private long bitBuffer;
+
+    // Always between 0 and 64, inclusive.
     private int numBitsRemaining;
 
     private boolean isEndOfStream;
@@ -30,44 +38,107 @@ public class BitInputStream {
 	if (in == null)
 	    throw new NullPointerException("No input stream given");
 	input = in;
+	byteBuffer = new byte[8192];
+	bytePos = 0;
+	byteLimit = 0;
+	bytesRead = 0;
 	numBitsRemaining = 0;
 	isEndOfStream = false;
     }
 
 
+    // Moves whole bytes into the bit buffer until it holds more than
+    // 56 bits or the end of stream is reached.
+    private void refill() throws IOException {
+	while (numBitsRemaining <= 56) {
+	    if (bytePos == byteLimit) {
+		if (isEndOfStream)
+		    return;
+		byteLimit = input.read(byteBuffer, 0, byteBuffer.length);
+		bytePos = 0;
+		if (byteLimit <= 0) {
+		    byteLimit = 0;
+		    isEndOfStream = true;
+		    return;
+		}
+		bytesRead += byteLimit;
+	    }
+	    bitBuffer = bitBuffer << 8 | (byteBuffer[bytePos++] & 0xFF);
+	    numBitsRemaining += 8;
+	}
+    }
+
+
     // Reads a bit from the stream. Returns 0 or 1 if a bit is
     // available, or -1 if the end of stream is reached. The end of
     // stream always occurs on a byte boundary.
     public int readBit() throws IOException {
-	if (isEndOfStream)
-	    return -1;
 	if (numBitsRemaining == 0) {
-	    nextBits = input.read();
-	    if (nextBits == -1) {
-		isEndOfStream = true;
+	    refill();
+	    if (numBitsRemaining == 0)
 		return -1;
-	    }
-	    numBitsRemaining = 8;
 	}
 	numBitsRemaining--;
-	return (nextBits >>> numBitsRemaining) & 1;
+	return (int) (bitBuffer >>> numBitsRemaining) & 1;
+    }
+
+
+    // Returns the next n bits (1 to 32) as an int without consuming
+    // them. If fewer than n bits are left before the end of stream,
+    // the missing low bits are returned as 0's.
+    public int peekBits(int n) throws IOException {
+	if (numBitsRemaining < n) {
+	    refill();
+	    if (numBitsRemaining < n)
+		return (int) ((bitBuffer << (n - numBitsRemaining)) & ((1L << n) - 1));
+	}
+	return (int) ((bitBuffer >>> (numBitsRemaining - n)) & ((1L << n) - 1));
+    }
+
+
+    // Consumes n bits that have previously been looked at through
+    // peekBits. Skipping past the end of stream leaves the stream at
+    // its end.
+    public void skipBits(int n) {
+	numBitsRemaining = Math.max(0, numBitsRemaining - n);
+    }
+
+
+    // Reads n bits (1 to 32) from the stream as an int. Throws
+    // IOException if n bits are not available.
+    public int readBits(int n) throws IOException {
+	if (numBitsRemaining < n) {
+	    refill();
+	    if (numBitsRemaining < n)
+		throw new IOException("Not enough bits while trying to read " + n + " bits");
+	}
+	numBitsRemaining -= n;
+	return (int) ((bitBuffer >>> numBitsRemaining) & ((1L << n) - 1));
+    }
+
+
+    // Skips the remaining bits of the current byte, if any, so the
+    // next bit read is the first bit of a byte.
+    public void alignToByte() {
+	numBitsRemaining -= numBitsRemaining % 8;
+    }
+
+
+    // Returns the number of bits read from this stream so far.
+    public long bitPosition() {
+	return (bytesRead - (byteLimit - bytePos)) * 8 - numBitsRemaining;
     }
 
 
     // Reads an int from the stream. Throws IOException if 32 bits are
     // not available.
     public int readInt() throws IOException {
-	int output = 0;
-	int nextBit;
-	int bitsAdded = 0;
-	while(bitsAdded < 32){
-	    nextBit = readBit();
-	    if (nextBit == -1)
+	if (numBitsRemaining < 32) {
+	    refill();
+	    if (numBitsRemaining < 32)
 		throw new IOException("Not enough bits while trying to read int");
-	    output = output << 1 | nextBit;
-	    bitsAdded++;
 	}
-	return output;
+	return readBits(32);
     }
 
 
@@ -11,16 +11,28 @@ import java.io.OutputStream;
 
 public final class BitOutputStream {
 
+    // The max number of bits writeBits accepts in one call.
+    public static final int MAX_BITS = 57;
+
     // Underlying byte stream to write to.
     private OutputStream output;
 
-    // The accumulated bits for the current byte. Always an int in the
-    // range 0 to 255.
-    private int currentByte;
+    // Whole bytes waiting to be written to the underlying stream in
+    // bulk.
+    private final byte[] byteBuffer;
+    private int byteCount;
+
+    // The number of bytes moved from byteBuffer to the underlying
+    // stream so far.
+    private long bytesWritten;
 
-    // The number of accumulated bits in the current byte. Always
-    // between 0 and 8, inclusive.
-    private int numBitsInCurrentByte;
+    // The accumulated bits not yet moved into byteBuffer, in the low
+    // numBitsInBuffer bits. Bits above those are stale.
+    private long bitBuffer;
+
+    // The number of accumulated bits in bitBuffer. Always between 0
+    // and 7, inclusive, between calls.
+    private int numBitsInBuffer;
 
 
     // Creates a bit output stream based on the given byte output
@@ -29,8 +41,10 @@ public final class BitOutputStream {
 	if (out == null)
 	    throw new NullPointerException("No output stream given");
 	output = out;
-	currentByte = 0;
-	numBitsInCurrentByte = 0;
+	byteBuffer = new byte[8192];
+	byteCount = 0;
+	bitBuffer = 0;
+	numBitsInBuffer = 0;
     }
 
 
@@ -38,23 +52,45 @@ public final class BitOutputStream {
     public void writeBit(int b) throws IOException {
 	if (!(b == 0 || b == 1))
 	    throw new IllegalArgumentException("Argument must be 0 or 1");
-	currentByte = currentByte << 1 | b;
-	numBitsInCurrentByte++;
-	if (numBitsInCurrentByte == 8) {
-	    output.write(currentByte);
-	    numBitsInCurrentByte = 0;
+	writeBits(b, 1);
+    }
+
+
+    // Writes the low n bits of the given value to the stream, most
+    // significant bit first. n must be between 0 and MAX_BITS,
+    // inclusive, and the bits of value above those n must be 0.
+    public void writeBits(long value, int n) throws IOException {
+	bitBuffer = bitBuffer << n | value;
+	numBitsInBuffer += n;
+	while (numBitsInBuffer >= 8) {
+	    numBitsInBuffer -= 8;
+	    byteBuffer[byteCount++] = (byte) (bitBuffer >>> numBitsInBuffer);
+	    if (byteCount == byteBuffer.length) {
+		output.write(byteBuffer, 0, byteCount);
+		bytesWritten += byteCount;
+		byteCount = 0;
+	    }
 	}
     }
 
 
+    // Returns the number of bits written to this stream so far.
+    public long bitPosition() {
+	return (bytesWritten + byteCount) * 8 + numBitsInBuffer;
+    }
+
+
+    // Writes the minimum number of "0" bits (between 0 and 7 of them)
+    // to reach the next byte boundary.
+    public void alignToByte() throws IOException {
+	if (numBitsInBuffer != 0)
+	    writeBits(0, 8 - numBitsInBuffer);
+    }
+
+
     // Writes an int to the stream.
     public void writeInt(int b) throws IOException {
-
-	int bitsWritten = 0;
-	while (bitsWritten < 32){
-	    writeBit(b >>> (31-bitsWritten) & 1);
-	    bitsWritten++;
-	}
+	writeBits(b & 0xFFFFFFFFL, 32);
     }
 
 
@@ -63,8 +99,10 @@ public final class BitOutputStream {
     // minimum number of "0" bits (between 0 and 7 of them) are
     // written as padding to reach the next byte boundary.
     public void close() throws IOException {
-	while (numBitsInCurrentByte != 0)
-	    writeBit(0);
+	alignToByte();
+	output.write(byteBuffer, 0, byteCount);
+	bytesWritten += byteCount;
+	byteCount = 0;
 	output.close();
     }
 
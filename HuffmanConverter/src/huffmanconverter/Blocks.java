@@ -0,0 +1,478 @@
+package huffmanconverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes and decodes files split into fixed-size blocks, each with its
+ *   own code length table, so blocks can be encoded and decoded in parallel
+ * A file of blocks is laid out as follows:
+ *     int     MAGIC (see Format) with version VERSION_SYNC_BLOCKS
+ *     varint  the block size
+ *     varint  the sync interval
+ *     for each block:
+ *       byte    TAG_BLOCK
+ *       varint  # of decoded bytes in the block
+ *       varint  # of encoded bytes of data in the block
+ *       if the block isn't empty, a code length table (see Format)
+ *       the encoded data, padded to a whole byte
+ *       varint  # of sync points in the block
+ *       for each sync point, the # of bits of data between the previous
+ *         sync point (or the start of the data) and this one, as a varint
+ *     byte    TAG_END
+ *     varint  # of blocks
+ *     for each block:
+ *       long    position of the block's tag in the file
+ *       long    position of the block's first byte in the decoded file
+ *     long    position of TAG_END in the file
+ * The index at the end lets a decoder find every block without reading
+ *   the ones before it
+ * Sync point k of a block is where the code of byte (k+1) * sync interval
+ *   of the block starts, so a decoder can start there instead of at the
+ *   start of the block
+ * Files of version VERSION_BLOCKS have neither the sync interval nor
+ *   any sync points
+ * @author me
+ */
+public class Blocks {
+    /** The # of input bytes per block unless another size is asked for */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    /** The # of decoded bytes between sync points unless another interval is asked for */
+    public static final int DEFAULT_SYNC_INTERVAL = 1 << 16;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_BLOCK = 1;
+
+    /**
+     * Encodes an input as a file of blocks, encoding blocks in parallel
+     * @param inp The input to encode
+     * @param outp The output to write the encoded input to
+     * @param blockSize The # of input bytes per block
+     * @param syncInterval The # of decoded bytes between sync points
+     * @param maxLength The max keyword length
+     * @param threads The # of blocks to encode at the same time
+     */
+    public static void encode(InputStream inp, OutputStream outp, int blockSize,
+            int syncInterval, int maxLength, int threads) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        BitOutputStream headerOutp = new BitOutputStream(header);
+        Format.writeMagic(headerOutp, Format.VERSION_SYNC_BLOCKS);
+        Format.writeVarLong(headerOutp, blockSize);
+        Format.writeVarLong(headerOutp, syncInterval);
+        headerOutp.close();
+        outp.write(header.toByteArray());
+        long position = header.size();
+
+        // we keep up to 2 blocks per thread in flight, so threads don't
+        //   wait on us writing, and we don't hold the whole file in memory
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        LongList positions = new LongList();
+        LongList offsets = new LongList();
+        long offset = 0;
+        try {
+            while (true) {
+                final byte[] data = new byte[blockSize];
+                final int len = readFully(inp, data);
+                if (len == 0) { break; }
+                pending.add(pool.submit(() -> encodeBlock(data, len, syncInterval, maxLength)));
+                offsets.add(offset);
+                offset += len;
+                if (pending.size() >= 2 * threads) {
+                    byte[] block = await(pending.poll());
+                    positions.add(position);
+                    outp.write(block);
+                    position += block.length;
+                }
+            }
+            while (!pending.isEmpty()) {
+                byte[] block = await(pending.poll());
+                positions.add(position);
+                outp.write(block);
+                position += block.length;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        BitOutputStream indexOutp = new BitOutputStream(index);
+        indexOutp.writeBits(TAG_END, 8);
+        Format.writeVarLong(indexOutp, positions.size());
+        for (int i = 0; i < positions.size(); ++i) {
+            Format.writeLong(indexOutp, positions.get(i));
+            Format.writeLong(indexOutp, offsets.get(i));
+        }
+        Format.writeLong(indexOutp, position);
+        indexOutp.close();
+        outp.write(index.toByteArray());
+        outp.close();
+    }
+
+    /**
+     * Encodes a single block, from its tag to the end of its data
+     * @param data The bytes of the block
+     * @param len The # of bytes of data to use
+     * @param syncInterval The # of decoded bytes between sync points
+     * @param maxLength The max keyword length
+     * @return The encoded block
+     */
+    public static byte[] encodeBlock(byte[] data, int len, int syncInterval,
+            int maxLength) throws IOException {
+        Histogram histogram = new Histogram();
+        histogram.add(data, 0, len);
+        long[] byteTable = histogram.counts();
+        int[] lengths = Huffman.generateLengths(byteTable, maxLength);
+        long[] codeTable = Huffman.canonicalCodeTable(lengths);
+        // we know the size of the data up front, so it can go before it
+        long encodedLength = (Huffman.encodedBits(byteTable, lengths) + 7) / 8;
+
+        ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream((int) encodedLength + 64);
+        BitOutputStream outp = new BitOutputStream(bytes);
+        outp.writeBits(TAG_BLOCK, 8);
+        Format.writeVarLong(outp, len);
+        Format.writeVarLong(outp, encodedLength);
+        if (len > 0) {
+            Format.writeCodeLengths(outp, byteTable, lengths);
+        }
+        // note where the code of every syncInterval'th byte starts as we go
+        LongList syncPoints = new LongList();
+        long bits = 0;
+        long lastSync = 0;
+        for (int i = 0; i < len; ++i) {
+            if (i % syncInterval == 0 && i > 0) {
+                syncPoints.add(bits - lastSync);
+                lastSync = bits;
+            }
+            long code = codeTable[data[i] & 0xFF];
+            outp.writeBits(code >>> 8, (int) code & 0xFF);
+            bits += code & 0xFF;
+        }
+        outp.alignToByte();
+        Format.writeVarLong(outp, syncPoints.size());
+        for (int i = 0; i < syncPoints.size(); ++i) {
+            Format.writeVarLong(outp, syncPoints.get(i));
+        }
+        outp.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a file of blocks, decoding blocks in parallel
+     * @param inpFilename The file to decode
+     * @param outp The output to write the decoded file to
+     * @param threads The # of blocks to decode at the same time
+     */
+    public static void decode(String inpFilename, OutputStream outp,
+            int threads) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inpFilename, "r")) {
+            FileChannel channel = file.getChannel();
+            Index index = readIndex(channel);
+            long[] positions = index.positions;
+            // a mapped output can be sized up front from the index
+            if (outp instanceof MappedOutputStream) {
+                ((MappedOutputStream) outp).presize(index.offsets[index.offsets.length - 1]);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+            try {
+                // block i spans from its position to the next one's
+                for (int i = 0; i + 1 < positions.length; ++i) {
+                    final long start = positions[i];
+                    final long end = positions[i + 1];
+                    pending.add(pool.submit(() -> {
+                        byte[] block = read(channel, start, (int) (end - start));
+                        return decodeBlock(new BitInputStream(
+                                new ByteArrayInputStream(block)));
+                    }));
+                    if (pending.size() >= 2 * threads) {
+                        outp.write(await(pending.poll()));
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    outp.write(await(pending.poll()));
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        outp.close();
+    }
+
+    /**
+     * Decodes a file of blocks one block at a time as it is read, so it
+     *   works on inputs that can't seek, and only holds one block in memory
+     * @param inp The input to decode, positioned after the magic int
+     * @param outp The output to write the decoded input to
+     * @param version The version of the format the input is in
+     */
+    public static void decodeStream(BitInputStream inp, OutputStream outp,
+            int version) throws IOException {
+        Format.readVarLong(inp); // the block size, which we don't need here
+        if (version == Format.VERSION_SYNC_BLOCKS) {
+            Format.readVarLong(inp); // the sync interval, likewise
+        }
+        // every block starts with its tag, and the index with TAG_END,
+        //   which we can stop at since we don't need to seek
+        while (inp.peekBits(8) == TAG_BLOCK) {
+            outp.write(decodeBlock(inp));
+            // blocks are padded to a whole byte
+            inp.alignToByte();
+            // and we have no use for the sync points when decoding it all
+            if (version == Format.VERSION_SYNC_BLOCKS) {
+                for (long n = Format.readVarLong(inp); n > 0; --n) {
+                    Format.readVarLong(inp);
+                }
+            }
+        }
+        if (inp.readBits(8) != TAG_END) {
+            throw new IOException("Expected the start of a block");
+        }
+    }
+
+    /**
+     * Decodes a range of a file of blocks, only decoding the blocks that
+     *   overlap the range, and starting from the last sync point before it
+     * @param inpFilename The file to decode
+     * @param outp The output to write the decoded range to
+     * @param offset The position in the decoded file of the first byte to decode
+     * @param len The # of bytes to decode; fewer are written if the file ends
+     *   first, and none if it ends at or before offset
+     */
+    public static void decodeRange(String inpFilename, OutputStream outp,
+            long offset, long len) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(inpFilename, "r")) {
+            FileChannel channel = file.getChannel();
+            BitInputStream headerInp = new BitInputStream(
+                    new ByteArrayInputStream(read(channel, 0,
+                            (int) Math.min(24, channel.size()))));
+            int version = Format.version(headerInp.readInt());
+            Format.readVarLong(headerInp); // the block size
+            long syncInterval = version == Format.VERSION_SYNC_BLOCKS
+                    ? Format.readVarLong(headerInp)
+                    : 0;
+
+            Index index = readIndex(channel);
+            // offset + len may be past Long.MAX_VALUE, which is past any file
+            long rangeEnd = len > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + len;
+            long end = Math.min(rangeEnd, index.offsets[index.offsets.length - 1]);
+            if (offset >= end) {
+                outp.close();
+                return;
+            }
+            // find the last block starting at or before our offset
+            int i = Arrays.binarySearch(index.offsets, 0, index.offsets.length - 1, offset);
+            if (i < 0) { i = -i - 2; }
+            for (; i >= 0 && i + 1 < index.offsets.length && index.offsets[i] < end; ++i) {
+                byte[] block = read(channel, index.positions[i],
+                        (int) (index.positions[i + 1] - index.positions[i]));
+                long from = Math.max(offset, index.offsets[i]) - index.offsets[i];
+                long to = Math.min(end, index.offsets[i + 1]) - index.offsets[i];
+                if (from >= to) { continue; }
+                decodeBlockRange(block, (int) from, (int) to, syncInterval, outp);
+            }
+        }
+        outp.close();
+    }
+
+    /**
+     * Decodes part of a single block, starting from the last sync point
+     *   before the part
+     * @param block The whole encoded block
+     * @param from The position in the decoded block of the first byte to decode
+     * @param to The position in the decoded block after the last byte to decode
+     * @param syncInterval The # of decoded bytes between sync points,
+     *   or 0 if the block has none
+     * @param outp The output to write the decoded part to
+     */
+    private static void decodeBlockRange(byte[] block, int from, int to,
+            long syncInterval, OutputStream outp) throws IOException {
+        BitInputStream inp = new BitInputStream(new ByteArrayInputStream(block));
+        if (inp.readBits(8) != TAG_BLOCK) {
+            throw new IOException("Expected the start of a block");
+        }
+        Format.readVarLong(inp); // the decoded length, which the index gave us
+        long encodedLength = Format.readVarLong(inp);
+        TableDecoder decoder = new TableDecoder(Format.readCodeLengths(inp));
+        int dataStart = (int) (inp.bitPosition() / 8);
+
+        // find the bit where the code of the last sync point before from starts
+        long startBit = 0;
+        long startByte = 0;
+        if (syncInterval > 0) {
+            inp = new BitInputStream(new ByteArrayInputStream(block,
+                    (int) (dataStart + encodedLength), block.length));
+            long numSyncPoints = Format.readVarLong(inp);
+            for (long k = 1; k <= numSyncPoints && k * syncInterval <= from; ++k) {
+                startBit += Format.readVarLong(inp);
+                startByte = k * syncInterval;
+            }
+        }
+
+        inp = new BitInputStream(new ByteArrayInputStream(block,
+                (int) (dataStart + startBit / 8), block.length));
+        if (startBit % 8 != 0) {
+            inp.readBits((int) (startBit % 8));
+        }
+        // decode and drop the bytes between the sync point and from,
+        //   then decode the ones we want
+        byte[] skipped = new byte[(int) (from - startByte)];
+        decoder.decode(inp, skipped, 0, skipped.length);
+        decoder.decode(inp, outp, to - from);
+    }
+
+    /**
+     * Decodes a single block
+     * @param inp The input to decode, positioned at the block's tag
+     * @return The decoded bytes of the block
+     */
+    public static byte[] decodeBlock(BitInputStream inp) throws IOException {
+        if (inp.readBits(8) != TAG_BLOCK) {
+            throw new IOException("Expected the start of a block");
+        }
+        long len = Format.readVarLong(inp);
+        Format.readVarLong(inp); // the encoded length, which we don't need here
+        if (len > Integer.MAX_VALUE) {
+            throw new IOException("Block of " + len + " bytes is too large");
+        }
+        byte[] data = new byte[(int) len];
+        if (len > 0) {
+            new TableDecoder(Format.readCodeLengths(inp))
+                    .decode(inp, data, 0, data.length);
+        }
+        return data;
+    }
+
+    /** The index at the end of a file of blocks */
+    public static class Index {
+        /**
+         * The position of each block in the file,
+         *   followed by the position of the index itself
+         */
+        public final long[] positions;
+        /**
+         * The position of each block's first byte in the decoded file,
+         *   followed by the size of the decoded file
+         */
+        public final long[] offsets;
+
+        public Index(long[] positions, long[] offsets) {
+            this.positions = positions;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * Reads the index from the end of a file of blocks
+     * @param channel The file to read from
+     * @return The index of the file
+     */
+    public static Index readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < 8) {
+            throw new IOException("File too small to hold a block index");
+        }
+        long indexPosition = ByteBuffer.wrap(read(channel, size - 8, 8)).getLong();
+        if (indexPosition < 0 || indexPosition > size - 8) {
+            throw new IOException("Invalid block index position " + indexPosition);
+        }
+        BitInputStream inp = new BitInputStream(new ByteArrayInputStream(
+                read(channel, indexPosition, (int) (size - 8 - indexPosition))));
+        if (inp.readBits(8) != TAG_END) {
+            throw new IOException("Expected the start of the block index");
+        }
+        int numBlocks = (int) Format.readVarLong(inp);
+        long[] positions = new long[numBlocks + 1];
+        long[] offsets = new long[numBlocks + 1];
+        for (int i = 0; i < numBlocks; ++i) {
+            positions[i] = Format.readLong(inp);
+            offsets[i] = Format.readLong(inp);
+        }
+        positions[numBlocks] = indexPosition;
+        offsets[numBlocks] = numBlocks == 0 ? 0
+                : offsets[numBlocks - 1] + blockLength(channel, positions[numBlocks - 1]);
+        return new Index(positions, offsets);
+    }
+
+    /** @return The # of decoded bytes of the block at a position */
+    private static long blockLength(FileChannel channel, long position)
+            throws IOException {
+        // a tag and a varint of at most 10 bytes
+        int len = (int) Math.min(11, channel.size() - position);
+        BitInputStream inp = new BitInputStream(
+                new ByteArrayInputStream(read(channel, position, len)));
+        inp.readBits(8);
+        return Format.readVarLong(inp);
+    }
+
+    /** Reads a range of a file, without moving the file's position */
+    static byte[] read(FileChannel channel, long position, int len)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Reads until an array is full or the input ends
+     * @return The # of bytes read, less than the array's length only at the end
+     */
+    public static int readFully(InputStream inp, byte[] buf) throws IOException {
+        int len = 0;
+        while (len < buf.length) {
+            int n = inp.read(buf, len, buf.length - len);
+            if (n == -1) { break; }
+            len += n;
+        }
+        return len;
+    }
+
+    /** Waits for a block, passing on any IOException it threw */
+    private static byte[] await(Future<byte[]> block) throws IOException {
+        try {
+            return block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a block", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /** A growable list of longs, so we don't box every position */
+    private static class LongList {
+        private long[] values = new long[16];
+        private int size = 0;
+
+        void add(long value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, 2 * this.size);
+            }
+            this.values[this.size++] = value;
+        }
+
+        long get(int i) { return this.values[i]; }
+
+        int size() { return this.size; }
+    }
+}
@@ -0,0 +1,85 @@
+package huffmanconverter;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared codecs known by an ID agreed on by both ends
+ * Messages are prefixed with the ID of the codec that encoded them,
+ *   instead of a code table, so the receiver can pick the right codec:
+ *     varint  codec ID
+ *     the message, as encoded by HuffmanCodec
+ * Codecs can be registered and looked up from any thread
+ * @author me
+ */
+public class CodecRegistry {
+    private final ConcurrentHashMap<Integer, HuffmanCodec> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a codec under an ID
+     * @param id The ID, >= 0
+     * @param codec The codec
+     * @throws IllegalArgumentException If the ID is negative or already taken
+     */
+    public void register(int id, HuffmanCodec codec) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Codec ID must be >= 0, got " + id);
+        }
+        if (this.codecs.putIfAbsent(id, codec) != null) {
+            throw new IllegalArgumentException("Codec ID " + id + " is already registered");
+        }
+    }
+
+    /**
+     * @param id The ID of a codec
+     * @return The codec registered under the ID
+     * @throws IllegalArgumentException If no codec has the ID
+     */
+    public HuffmanCodec get(int id) {
+        HuffmanCodec codec = this.codecs.get(id);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown codec ID " + id);
+        }
+        return codec;
+    }
+
+    /**
+     * Encodes the remaining bytes of src into dst with a registered codec,
+     *   prefixed with the codec's ID
+     * @param id The ID of the codec to use
+     * @param src The bytes to encode
+     * @param dst The buffer to write the message to
+     * @return The # of bytes written to dst
+     * @throws BufferOverflowException If dst does not have room for the
+     *   message, in which case neither buffer is changed
+     */
+    public int encode(int id, ByteBuffer src, ByteBuffer dst) {
+        HuffmanCodec codec = get(id);
+        int dstStart = dst.position();
+        try {
+            HuffmanCodec.putVarInt(dst, id);
+            codec.encode(src, dst);
+        } catch (BufferOverflowException e) {
+            dst.position(dstStart);
+            throw e;
+        }
+        return dst.position() - dstStart;
+    }
+
+    /**
+     * Decodes a message written by encode with whichever codec it names
+     * @param src The buffer holding the message, at its start
+     * @param dst The buffer to write the decoded bytes to
+     * @return The # of bytes written to dst
+     */
+    public int decode(ByteBuffer src, ByteBuffer dst) {
+        int srcStart = src.position();
+        try {
+            return get(HuffmanCodec.getVarInt(src)).decode(src, dst);
+        } catch (RuntimeException e) {
+            src.position(srcStart);
+            throw e;
+        }
+    }
+}
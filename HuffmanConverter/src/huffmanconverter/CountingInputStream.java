@@ -0,0 +1,41 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream reading from another while counting the bytes
+ * @author me
+ */
+public class CountingInputStream extends InputStream {
+    private final InputStream inp;
+    private long count = 0;
+
+    public CountingInputStream(InputStream inp) {
+        this.inp = inp;
+    }
+
+    /** @return The # of bytes read so far */
+    public long count() {
+        return this.count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = this.inp.read();
+        if (b != -1) { ++this.count; }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = this.inp.read(b, off, len);
+        if (n > 0) { this.count += n; }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.inp.close();
+    }
+}
@@ -0,0 +1,44 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream passing everything on to another while counting the bytes
+ * @author me
+ */
+public class CountingOutputStream extends OutputStream {
+    private final OutputStream outp;
+    private long count = 0;
+
+    public CountingOutputStream(OutputStream outp) {
+        this.outp = outp;
+    }
+
+    /** @return The # of bytes written so far */
+    public long count() {
+        return this.count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.outp.write(b);
+        ++this.count;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.outp.write(b, off, len);
+        this.count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.outp.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.outp.close();
+    }
+}
@@ -6,7 +6,13 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -15,52 +21,45 @@ import java.io.OutputStream;
 public class Decode {
     /**
      * Decodes a file that has been encoded using Huffman encoding
-     * File should first have a byte frequency table
+     * File should first have a header, either a byte frequency table
+     *   or a compact table of keyword lengths (see Format)
      * Then have the file content in Huffman encoding
+     * Files of blocks (see Blocks) are decoded one block at a time
      * @param inp The input to decode
      * @param outp The output to write the decoded input to
+     * @param stats The stats to record each phase in
      */
-    private static void huffmanDecode(BitInputStream inp, OutputStream outp) throws IOException {
-        // first read our byte table from the file
-        int[] byteTable = new int[256];
-        // long used so we can decode filesizes of a couple exabytes instead of ~2 GB with int
-        long numBytes = 0;
-        for (int i = 0; i < byteTable.length; ++i) {
-            byteTable[i] = inp.readInt();
-            numBytes += byteTable[i];
+    @SuppressWarnings("try") // phases are timed by the try blocks around them
+    private static void huffmanDecode(BitInputStream inp, OutputStream outp, Stats stats)
+            throws IOException {
+        int version = Format.version(inp.peekBits(32));
+        if (Format.isBlocks(version)) {
+            try (Stats.Phase phase = stats.phase("blocks")) {
+                inp.readInt();
+                Blocks.decodeStream(inp, outp, version);
+            }
+            return;
         }
         
-        // then convert that to a Huffman tree
-        Huffman.Node tree = Huffman.generateTree(byteTable);
+        // first read our header, which gives us our Huffman tree
+        Format.Header header;
+        try (Stats.Phase phase = stats.phase("header")) {
+            header = Format.readHeader(inp);
+        }
+        stats.maxCodeLength(Huffman.toCodeLengths(header.tree));
+        // a mapped output can be sized up front now we know the decoded size
+        if (outp instanceof MappedOutputStream) {
+            ((MappedOutputStream) outp).presize(header.numBytes);
+        }
         
-        // then decode the file
-        long decodedBytes = 0;
-        while (decodedBytes < numBytes) {
-            outp.write(decodeByte(inp, tree));
-            ++decodedBytes;
+        // then decode the file, resolving several bits per table lookup
+        TableDecoder decoder;
+        try (Stats.Phase phase = stats.phase("table")) {
+            decoder = new TableDecoder(header.tree);
         }
-    }
-    
-    /**
-     * Decodes a single byte from an input, according to the given Huffman tree
-     * @param inp The input to decode a byte from
-     * @param tree The Huffman tree to use for decoding
-     */
-    private static int decodeByte(BitInputStream inp, Huffman.Node tree) throws IOException {
-        Huffman.Node curTree = tree;
-        // keep going until we reach a leaf in the tree
-        while (true) {
-            int bit = inp.readBit();
-            Huffman.Node child = bit == 0
-                    ? curTree.left
-                    : curTree.right;
-            // we know the child is either a new subtree or a leaf
-            // if it's a leaf, it's the byte we decoded into
-            if (child.isLeaf()) {
-                return child.getByte();
-            } else {
-                curTree = child;
-            }
+        try (Stats.Phase phase = stats.phase("decode")) {
+            decoder.decode(inp, outp, header.numBytes);
+            phase.bytes(header.numBytes);
         }
     }
     
@@ -69,27 +68,154 @@ public class Decode {
      * @throws java.io.FileNotFoundException
      */
     public static void main(String[] args) throws FileNotFoundException, IOException {
-        if (args.length < 1) {
-            System.out.println("\u001B[31m[Err] No input given\nUsage:\n  java Decode in.enc [out.txt]");
+        // split our arguments into options and filenames
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean mmap = false;
+        boolean pipelined = false;
+        boolean batch = false;
+        boolean showStats = false;
+        boolean isRange = false;
+        long rangeOffset = 0;
+        long rangeLength = 0;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--mmap")) {
+                mmap = true;
+            } else if (args[i].equals("--pipeline")) {
+                pipelined = true;
+            } else if (args[i].equals("--stats")) {
+                showStats = true;
+            } else if (args[i].equals("--batch")) {
+                batch = true;
+            } else if (args[i].equals("--range") && i + 2 < args.length) {
+                isRange = true;
+                rangeOffset = Long.parseLong(args[++i]);
+                rangeLength = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        
+        if (files.size() < 1) {
+            System.out.println("\u001B[31m[Err] No input given\nUsage:\n  java Decode [--mmap] [--pipeline] [--stats] [--threads n] in.enc|- [out.txt|-]\n"
+                    + "  java Decode --range offset length in.enc [out.txt|-]\n"
+                    + "  java Decode --batch [--threads n] dir|list.txt|-|in.arc [outdir]");
+            System.exit(1);
+        }
+        if (threads < 1) {
+            System.out.println("\u001B[31m[Err] # of threads must be positive");
+            System.exit(1);
+        }
+        // in batch mode our input is an archive, a directory, or a list of
+        //   files, each of which is decoded to a file of its own
+        if (batch) {
+            Path outDir = files.size() < 2 ? null : Paths.get(files.get(1));
+            int failed = Batch.isArchive(files.get(0))
+                    ? Batch.decodeArchive(files.get(0), outDir == null ? Paths.get(".") : outDir, threads)
+                    : Batch.decode(Batch.listInputs(files.get(0)), outDir, threads);
+            // let scripts tell a partial failure from a success
+            if (failed > 0) { System.exit(1); }
             return;
         }
-        if (args.length < 2) {
+        if (isRange && (rangeOffset < 0 || rangeLength < 0)) {
+            System.out.println("\u001B[31m[Err] Range offset and length must not be negative");
+            System.exit(1);
+        }
+        if (isRange && files.get(0).equals("-")) {
+            System.out.println("\u001B[31m[Err] Decoding a range seeks in the input, so it must be a file, not stdin");
+            System.exit(1);
+        }
+        if (files.size() < 2) {
             System.err.println("\u001B[33m[Warn] No output given; writing to stdout");
         }
         
         // initialize our input and output streams
-        BitInputStream inp = new BitInputStream(
-                new BufferedInputStream(new FileInputStream(args[0]))
-        );
-        OutputStream outp = args.length < 2
-                ? System.out
-                : new BufferedOutputStream(new FileOutputStream(args[1]));
+        // an input of "-" means reading from stdin
+        boolean isStdin = files.get(0).equals("-");
+        // stdin and stdout are counted as we go, files are measured once done
+        boolean isStdout = files.size() < 2 || files.get(1).equals("-");
+        CountingInputStream stdin = new CountingInputStream(System.in);
+        CountingOutputStream stdout = new CountingOutputStream(System.out);
+        InputStream input = isStdin
+                ? stdin
+                : mmap
+                    ? new MappedInputStream(files.get(0))
+                    : new BufferedInputStream(new FileInputStream(files.get(0)));
+        OutputStream outp = isStdout
+                ? stdout
+                : mmap
+                    ? new MappedOutputStream(files.get(1))
+                    : new BufferedOutputStream(new FileOutputStream(files.get(1)));
+        // in a pipeline our input is read ahead and our output written
+        //   behind on their own threads, while we decode in between
+        Pipeline pipeline = pipelined ? new Pipeline() : null;
+        if (pipeline != null) {
+            input = pipeline.reader(input);
+            outp = pipeline.writer(outp);
+        }
+        Stats stats = new Stats("decode", showStats);
+        boolean decoded;
+        try {
+            decoded = decode(files.get(0), new BitInputStream(input), outp,
+                    isStdin, isRange, rangeOffset, rangeLength, threads, stats);
+            if (decoded) {
+                stats.bytes(isStdin ? stdin.count() : Files.size(Paths.get(files.get(0))),
+                        isStdout ? stdout.count() : Files.size(Paths.get(files.get(1))));
+                stats.finish();
+                if (showStats) { stats.report(); }
+                if (pipeline != null) { pipeline.report(); }
+            }
+        } finally {
+            if (pipeline != null) { pipeline.close(); }
+        }
+        if (!decoded) { System.exit(1); }
+    }
+    
+    /**
+     * Decodes our input however its format and our options call for
+     * @return Whether it could be, rather than an error having been printed
+     */
+    @SuppressWarnings("try") // phases are timed by the try blocks around them
+    private static boolean decode(String inpFilename, BitInputStream inp, OutputStream outp,
+            boolean isStdin, boolean isRange, long rangeOffset, long rangeLength,
+            int threads, Stats stats) throws IOException {
+        // files of blocks are decoded in parallel, straight from the file
+        //   if we can seek in it, and one block at a time otherwise
+        int version = Format.version(inp.peekBits(32));
+        if (version == Format.VERSION_ARCHIVE) {
+            System.out.println("\u001B[31m[Err] Archives are decoded with --batch");
+            inp.close();
+            outp.close();
+            return false;
+        }
+        boolean isBlocks = Format.isBlocks(version);
+        if (!isStdin && isBlocks) {
+            inp.close();
+            try (Stats.Phase phase = stats.phase(isRange ? "range" : "blocks")) {
+                if (isRange) {
+                    // only the blocks overlapping the range are read
+                    Blocks.decodeRange(inpFilename, outp, rangeOffset, rangeLength);
+                } else {
+                    Blocks.decode(inpFilename, outp, threads);
+                }
+            }
+            return true;
+        }
+        if (isRange) {
+            System.out.println("\u001B[31m[Err] Only files of blocks (Encode --blocks) can be decoded by range");
+            inp.close();
+            outp.close();
+            return false;
+        }
         
         // then decode our input and write it to our output
-        huffmanDecode(inp, outp);
+        huffmanDecode(inp, outp, stats);
         
         // then close our streams
         inp.close();
         outp.close();
+        return true;
     }
 }
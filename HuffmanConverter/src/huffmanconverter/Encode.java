@@ -10,6 +10,11 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -18,51 +23,135 @@ import java.io.InputStream;
 public class Encode {    
     /**
      * Encodes a file according to Huffman encoding
-     * First outputs the byte table for later decoding
+     * First outputs a header for later decoding; either the byte table,
+     *   or a compact table of canonical keyword lengths (see Format)
      * Then outputs the input content
      * @param inpFilename The input file to encode
-     * @param outp The output to write the encoded input to
-     * @param byteTable The # of occurrences of each byte
+     * @param output The output to write the encoded input to
+     * @param legacy Whether to write the byte table header of the original format
+     * @param maxLength The max keyword length, unless writing the original format
+     * @param mmap Whether to read the input through memory mapping
+     * @param threads The # of threads to count bytes with
+     * @param pipeline The pipeline to read our input through, or null to
+     *   read it on this thread
+     * @param stats The stats to record each phase in
      */
+    @SuppressWarnings("try") // phases are timed by the try blocks around them
     private static void huffmanEncode(
-            String inpFilename, BitOutputStream outp) throws IOException {
+            String inpFilename, OutputStream output,
+            boolean legacy, int maxLength, boolean mmap, int threads,
+            Pipeline pipeline, Stats stats)
+            throws IOException {
         // first read our byte table from our input
-        int[] byteTable = readByteTable(generateInputStream(inpFilename));
-        // then generate our byte -> bit sequence table
-        String[] lookupTable = Huffman.generate(byteTable);
+        long[] byteTable;
+        long numBytes = 0;
+        try (Stats.Phase phase = stats.phase("histogram")) {
+            InputStream tableInp = generateInputStream(inpFilename, mmap, pipeline);
+            byteTable = Histogram.count(tableInp, threads);
+            tableInp.close();
+            for (long count : byteTable) {
+                numBytes += count;
+            }
+            phase.bytes(numBytes);
+        }
         
-        // then write our output
-        // first our byte table for later decoding
-        for (int i : byteTable) {
-            outp.writeInt(i);
+        // then generate our byte -> packed bit sequence table
+        long[] codeTable;
+        int[] legacyTable = null;
+        int[] lengths;
+        try (Stats.Phase phase = stats.phase("tree")) {
+            if (legacy) {
+                // the decoder rebuilds the exact same tree from our byte table
+                legacyTable = toLegacyTable(byteTable);
+                Huffman.Node tree = Huffman.generateTree(legacyTable);
+                codeTable = Huffman.toCodeTable(tree);
+                lengths = Huffman.toCodeLengths(tree);
+            } else {
+                // the decoder only gets the keyword lengths,
+                //   so we must use the canonical keywords for those lengths
+                int[] optimal = Huffman.optimalLengths(byteTable);
+                lengths = Huffman.limitLengths(byteTable, optimal, maxLength);
+                if (lengths != optimal) {
+                    reportLengthLimit(byteTable, optimal, lengths);
+                }
+                codeTable = Huffman.canonicalCodeTable(lengths);
+            }
         }
+        stats.code(byteTable, lengths);
         
-        // then our encoded file
-        InputStream inp = generateInputStream(inpFilename);
-        int data;
-        while ((data = inp.read()) != -1) {
-            for (char c : lookupTable[data].toCharArray()) {
-                outp.writeBit(c == '0' ? 0 : 1);
+        // then write our header
+        BitOutputStream outp = new BitOutputStream(output);
+        try (Stats.Phase phase = stats.phase("header")) {
+            if (legacy) {
+                for (int i : legacyTable) {
+                    outp.writeInt(i);
+                }
+            } else {
+                Format.writeHeader(outp, byteTable, lengths);
             }
         }
+        // a mapped output can be sized up front now we know the encoded size
+        if (output instanceof MappedOutputStream) {
+            ((MappedOutputStream) output).presize(
+                    (outp.bitPosition() + Huffman.encodedBits(byteTable, lengths) + 7) / 8);
+        }
         
-        // close our resources
-        inp.close();
-        outp.close();
+        // then our encoded file
+        // we read in bulk and write whole keywords, so nothing is allocated per byte
+        try (Stats.Phase phase = stats.phase("encode")) {
+            InputStream inp = generateInputStream(inpFilename, mmap, pipeline);
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = inp.read(buf)) != -1) {
+                for (int i = 0; i < len; ++i) {
+                    long code = codeTable[buf[i] & 0xFF];
+                    outp.writeBits(code >>> 8, (int) code & 0xFF);
+                }
+            }
+            
+            // close our resources
+            inp.close();
+            outp.close();
+            phase.bytes(numBytes);
+        }
     }
     
     /**
-     * Reads a file, returning an int[256] of occurrences of each byte
-     * @param input The input to read
+     * Reports how much longer the output got from limiting keyword lengths,
+     *   if it had to be limited at all
+     * @param byteTable The # of occurrences of each byte
+     * @param optimal The keyword lengths of the unlimited Huffman tree
+     * @param limited The keyword lengths actually used
+     */
+    private static void reportLengthLimit(
+            long[] byteTable, int[] optimal, int[] limited) {
+        long optimalBits = Huffman.encodedBits(byteTable, optimal);
+        long limitedBits = Huffman.encodedBits(byteTable, limited);
+        if (limitedBits == optimalBits) { return; }
+        System.err.printf(
+                "\u001B[36m[Info] Keyword lengths limited; %d bytes of data instead of %d (+%.3f%%)%n",
+                (limitedBits + 7) / 8, (optimalBits + 7) / 8,
+                100.0 * (limitedBits - optimalBits) / optimalBits);
+    }
+    
+    /**
+     * Converts a byte table to the int[256] the legacy format stores
+     * The legacy tree is built with int keys, so the total must fit an int
+     * @param byteTable The # of occurrences of each byte
      * @return An int[256] with each value being the # of occurrences of the byte
      */
-    private static int[] readByteTable(InputStream input) throws IOException {
-        int[] byteTable = new int[256];
-        int data;
-        while ((data = input.read()) != -1) {
-            ++byteTable[data];
+    private static int[] toLegacyTable(long[] byteTable) throws IOException {
+        int[] legacyTable = new int[256];
+        long total = 0;
+        for (int byt = 0; byt < byteTable.length; ++byt) {
+            total += byteTable[byt];
+            legacyTable[byt] = (int) byteTable[byt];
         }
-        return byteTable;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Input of " + total
+                    + " bytes is too large for the legacy format");
+        }
+        return legacyTable;
     }
     
     /**
@@ -70,39 +159,167 @@ public class Encode {
      * Moved to its own method because it's done twice,
      *   and some testing was done to optimize it
      * @param inpFilename File to create InputStream from
-     * @return A BufferedInputStream(FileInputStream) of the file
+     * @param mmap Whether to read the file through memory mapping
+     * @param pipeline The pipeline to read the file ahead on, or null
+     * @return A MappedInputStream of the file if mmap is set,
+     *   otherwise a BufferedInputStream(FileInputStream) of the file,
+     *   read by the pipeline's reader stage if one is given
      */
-    private static InputStream generateInputStream(String inpFilename)
-            throws FileNotFoundException {
-        return new BufferedInputStream(
-                new FileInputStream(inpFilename)
-        );
+    private static InputStream generateInputStream(
+            String inpFilename, boolean mmap, Pipeline pipeline)
+            throws IOException {
+        InputStream inp = mmap
+                ? new MappedInputStream(inpFilename)
+                : new BufferedInputStream(new FileInputStream(inpFilename));
+        return pipeline == null ? inp : pipeline.reader(inp);
     }
     
     /**
      * @param args the command line arguments
      * @throws java.io.FileNotFoundException
      */
+    @SuppressWarnings("try") // phases are timed by the try blocks around them
     public static void main(String[] args) throws FileNotFoundException, IOException {
-        if (args.length < 1) {
-            System.out.println("\u001B[31m[Err] No input given\nUsage:\n  java Encode in.txt [out.enc]");
+        // split our arguments into options and filenames
+        boolean legacy = false;
+        boolean blocks = false;
+        boolean mmap = false;
+        boolean pipelined = false;
+        boolean batch = false;
+        boolean showStats = false;
+        String archive = null;
+        int blockSize = Blocks.DEFAULT_BLOCK_SIZE;
+        int syncInterval = Blocks.DEFAULT_SYNC_INTERVAL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxLength = Huffman.DEFAULT_MAX_LENGTH;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--legacy")) {
+                legacy = true;
+            } else if (args[i].equals("--mmap")) {
+                mmap = true;
+            } else if (args[i].equals("--pipeline")) {
+                pipelined = true;
+            } else if (args[i].equals("--stats")) {
+                showStats = true;
+            } else if (args[i].equals("--batch")) {
+                batch = true;
+            } else if (args[i].equals("--archive") && i + 1 < args.length) {
+                batch = true;
+                archive = args[++i];
+            } else if (args[i].equals("--blocks")) {
+                blocks = true;
+            } else if (args[i].equals("--block-size") && i + 1 < args.length) {
+                blocks = true;
+                blockSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--sync-interval") && i + 1 < args.length) {
+                blocks = true;
+                syncInterval = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--max-code-length") && i + 1 < args.length) {
+                maxLength = Integer.parseInt(args[++i]);
+                if (maxLength < 8 || maxLength > Huffman.MAX_PACKED_LENGTH) {
+                    System.out.println("\u001B[31m[Err] Max code length must be between 8 and "
+                            + Huffman.MAX_PACKED_LENGTH);
+                    return;
+                }
+            } else {
+                files.add(args[i]);
+            }
+        }
+        
+        if (files.size() < 1) {
+            System.out.println("\u001B[31m[Err] No input given\nUsage:\n"
+                    + "  java Encode [--legacy] [--mmap] [--pipeline] [--stats] [--threads n] [--max-code-length n] in.txt [out.enc]\n"
+                    + "  java Encode --blocks [--mmap] [--pipeline] [--stats] [--block-size n] [--sync-interval n] [--threads n] [--max-code-length n] in.txt|- [out.enc|-]\n"
+                    + "  java Encode --batch [--threads n] [--max-code-length n] dir|list.txt|- [outdir]\n"
+                    + "  java Encode --archive out.arc [--threads n] [--max-code-length n] dir|list.txt|-");
+            return;
+        }
+        if (threads < 1) {
+            System.out.println("\u001B[31m[Err] # of threads must be positive");
+            return;
+        }
+        // in batch mode our input is a directory, or a list of files,
+        //   each of which is encoded in the compact format
+        if (batch) {
+            if (legacy || blocks || pipelined) {
+                System.out.println("\u001B[31m[Err] Batch mode only writes the compact format,"
+                        + " without a pipeline");
+                return;
+            }
+            Batch.Inputs inputs = Batch.listInputs(files.get(0));
+            int failed = archive != null
+                    ? Batch.encodeArchive(inputs, archive, maxLength, threads)
+                    : Batch.encode(inputs, files.size() < 2 ? null : Paths.get(files.get(1)),
+                            maxLength, threads);
+            // let scripts tell a partial failure from a success
+            if (failed > 0) { System.exit(1); }
+            return;
+        }
+        // an input of "-" means reading from stdin, which we can only do
+        //   in a single pass, so it is always split into blocks
+        boolean isStdin = files.get(0).equals("-");
+        if (isStdin && legacy) {
+            System.out.println("\u001B[31m[Err] The legacy format can't be read from stdin");
+            return;
+        }
+        blocks |= isStdin;
+        if (legacy && blocks) {
+            System.out.println("\u001B[31m[Err] The legacy format can't be split into blocks");
+            return;
+        }
+        if (blockSize < 1 || syncInterval < 1 || threads < 1) {
+            System.out.println("\u001B[31m[Err] Block size, sync interval and # of threads must be positive");
             return;
         }
-        if (args.length < 2) {
+        if (files.size() < 2) {
             System.err.println("\u001B[33m[Warn] No output given; writing to stdout");
         }
         
-        // initialize our output stream
-        // we cannot initialize our input stream yet, since FileInputStream 
-        //    doesn't support .reset.
-        //    we must delay creating it until we're inside our encode method
-        BitOutputStream outp = new BitOutputStream(
-                args.length < 2
-                    ? System.out
-                    : new BufferedOutputStream(new FileOutputStream(args[1]))
-        );
+        // stdin and stdout are counted as we go, files are measured once done
+        boolean isStdout = files.size() < 2 || files.get(1).equals("-");
+        CountingInputStream stdin = new CountingInputStream(System.in);
+        CountingOutputStream stdout = new CountingOutputStream(System.out);
+        OutputStream output = isStdout
+                ? stdout
+                : mmap
+                    ? new MappedOutputStream(files.get(1))
+                    : new BufferedOutputStream(new FileOutputStream(files.get(1)));
+        // in a pipeline our input is read ahead and our output written
+        //   behind on their own threads, while we code in between
+        Pipeline pipeline = pipelined ? new Pipeline() : null;
+        if (pipeline != null) {
+            output = pipeline.writer(output);
+        }
         
-        // then encode our input and write it to our output
-        huffmanEncode(args[0], outp);
+        Stats stats = new Stats("encode", showStats);
+        try {
+            // blocks are encoded in a single pass over our input,
+            //   holding only the blocks being worked on in memory
+            if (blocks) {
+                try (Stats.Phase phase = stats.phase("blocks")) {
+                    InputStream inp = isStdin ? stdin : generateInputStream(files.get(0), mmap, null);
+                    Blocks.encode(pipeline == null ? inp : pipeline.reader(inp),
+                            output, blockSize, syncInterval, maxLength, threads);
+                }
+            } else {
+                // we cannot initialize our input stream yet, since FileInputStream 
+                //    doesn't support .reset.
+                //    we must delay creating it until we're inside our encode method
+                
+                // then encode our input and write it to our output
+                huffmanEncode(files.get(0), output, legacy, maxLength, mmap, threads,
+                        pipeline, stats);
+            }
+            stats.bytes(isStdin ? stdin.count() : Files.size(Paths.get(files.get(0))),
+                    isStdout ? stdout.count() : Files.size(Paths.get(files.get(1))));
+            stats.finish();
+            if (showStats) { stats.report(); }
+            if (pipeline != null) { pipeline.report(); }
+        } finally {
+            if (pipeline != null) { pipeline.close(); }
+        }
     }
 }
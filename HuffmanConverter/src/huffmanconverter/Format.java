@@ -0,0 +1,277 @@
+package huffmanconverter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes the header at the start of an encoded file
+ *
+ * The original (legacy) format starts with a table of 256 ints, the # of
+ *   occurrences of each byte, from which the decoder rebuilds the tree
+ * The compact format instead stores canonical keyword lengths for only the
+ *   bytes that occur, and starts with a magic int that can't be the first
+ *   int of a legacy file, since that is a non-negative byte count:
+ *     int     MAGIC (0x9F 'H' 'C' version)
+ *     varint  # of encoded bytes
+ *     if the # of encoded bytes is > 0, a code length table:
+ *       byte  flags; SYMBOL_BITMAP, NIBBLE_LENGTHS
+ *       the bytes that occur, either as a 256-bit bitmap,
+ *         or as a byte of (# of bytes - 1) followed by the bytes in order
+ *       if more than one byte occurs, their keyword lengths in byte order,
+ *         as 4-bit nibbles padded to a whole byte, or as whole bytes
+ * Files split into independently decodable blocks use the same magic int
+ *   with their own version, and are described in Blocks
+ * Archives of many encoded files use it too, and are described in Batch
+ * @author me
+ */
+public class Format {
+    /** The first 3 bytes of a compact header, shifted into place for the version */
+    private static final int MAGIC_PREFIX = 0x9F4843 << 8;
+    /** The version of the original format with a byte table */
+    public static final int VERSION_LEGACY = 1;
+    /** The version of the compact format with a single code length table */
+    public static final int VERSION_COMPACT = 2;
+    /** The version of the format of independent blocks (see Blocks) */
+    public static final int VERSION_BLOCKS = 3;
+    /** The version of the format of independent blocks with sync points */
+    public static final int VERSION_SYNC_BLOCKS = 4;
+    /** The version of the format of archives of many files (see Batch) */
+    public static final int VERSION_ARCHIVE = 5;
+
+    /** Flag set when the bytes that occur are stored as a bitmap */
+    private static final int SYMBOL_BITMAP = 1;
+    /** Flag set when keyword lengths are stored as nibbles */
+    private static final int NIBBLE_LENGTHS = 2;
+
+    /**
+     * The information a header holds
+     * Decoding needs both the tree and the # of bytes, since the encoded
+     *   data is padded to a whole byte
+     */
+    public static class Header {
+        public final long numBytes;
+        public final Huffman.Node tree;
+
+        public Header(long numBytes, Huffman.Node tree) {
+            this.numBytes = numBytes;
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * Figures out the format of a file from its first int
+     * @param first The first 4 bytes of the file, as an int
+     * @return The version of the format the file is in
+     */
+    public static int version(int first) {
+        return (first & ~0xFF) == MAGIC_PREFIX ? first & 0xFF : VERSION_LEGACY;
+    }
+
+    /** @return Whether a version is one of the formats of blocks */
+    public static boolean isBlocks(int version) {
+        return version == VERSION_BLOCKS || version == VERSION_SYNC_BLOCKS;
+    }
+
+    /**
+     * Writes the magic int that starts every file not in the legacy format
+     * @param outp The output to write to, at the start of the file
+     * @param version The version of the format the file is in
+     */
+    public static void writeMagic(BitOutputStream outp, int version)
+            throws IOException {
+        outp.writeInt(MAGIC_PREFIX | version);
+    }
+
+    /**
+     * Writes a compact header
+     * @param outp The output to write to, at a byte boundary
+     * @param byteTable The # of occurrences of each byte
+     * @param lengths The keyword length of each byte
+     */
+    public static void writeHeader(
+            BitOutputStream outp, long[] byteTable, int[] lengths)
+            throws IOException {
+        long numBytes = 0;
+        for (long count : byteTable) {
+            numBytes += count;
+        }
+        writeMagic(outp, VERSION_COMPACT);
+        writeVarLong(outp, numBytes);
+        if (numBytes > 0) {
+            writeCodeLengths(outp, byteTable, lengths);
+        }
+    }
+
+    /**
+     * Reads a header of either format
+     * @param inp The input to read from, at the start of the file
+     * @return The header read
+     */
+    public static Header readHeader(BitInputStream inp) throws IOException {
+        int first = inp.readInt();
+        int version = version(first);
+        if (version == VERSION_LEGACY) {
+            return readLegacyHeader(inp, first);
+        }
+        if (version != VERSION_COMPACT) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        long numBytes = readVarLong(inp);
+        if (numBytes == 0) {
+            return new Header(0, null);
+        }
+        return new Header(numBytes, readCodeLengths(inp));
+    }
+
+    /**
+     * Reads the rest of a legacy header; a table of 256 ints
+     * @param inp The input to read from
+     * @param first The first int of the table, which has already been read
+     */
+    private static Header readLegacyHeader(BitInputStream inp, int first)
+            throws IOException {
+        int[] byteTable = new int[256];
+        byteTable[0] = first;
+        // long used so we can decode filesizes of a couple exabytes instead of ~2 GB with int
+        long numBytes = first;
+        for (int i = 1; i < byteTable.length; ++i) {
+            byteTable[i] = inp.readInt();
+            numBytes += byteTable[i];
+        }
+        return new Header(numBytes, Huffman.generateTree(byteTable));
+    }
+
+    /**
+     * Writes a code length table
+     * @param outp The output to write to, at a byte boundary
+     * @param byteTable The # of occurrences of each byte, at least one > 0
+     * @param lengths The keyword length of each byte
+     */
+    public static void writeCodeLengths(
+            BitOutputStream outp, long[] byteTable, int[] lengths)
+            throws IOException {
+        int numSymbols = 0;
+        int maxLength = 0;
+        for (int byt = 0; byt < byteTable.length; ++byt) {
+            if (byteTable[byt] != 0) {
+                ++numSymbols;
+                maxLength = Math.max(maxLength, lengths[byt]);
+            }
+        }
+        // a list costs a byte per symbol, a bitmap a fixed 32 bytes
+        int flags = (numSymbols + 1 > 32 ? SYMBOL_BITMAP : 0)
+                | (maxLength <= 15 ? NIBBLE_LENGTHS : 0);
+        outp.writeBits(flags, 8);
+
+        if ((flags & SYMBOL_BITMAP) != 0) {
+            for (int byt = 0; byt < byteTable.length; ++byt) {
+                outp.writeBit(byteTable[byt] != 0 ? 1 : 0);
+            }
+        } else {
+            outp.writeBits(numSymbols - 1, 8);
+            for (int byt = 0; byt < byteTable.length; ++byt) {
+                if (byteTable[byt] != 0) { outp.writeBits(byt, 8); }
+            }
+        }
+
+        // a lone byte has an empty keyword, so there's nothing to store
+        if (numSymbols > 1) {
+            int lengthBits = (flags & NIBBLE_LENGTHS) != 0 ? 4 : 8;
+            int numBits = 0;
+            for (int byt = 0; byt < byteTable.length; ++byt) {
+                if (byteTable[byt] != 0) {
+                    outp.writeBits(lengths[byt], lengthBits);
+                    numBits += lengthBits;
+                }
+            }
+            // pad to a whole byte
+            outp.writeBits(0, -numBits & 7);
+        }
+    }
+
+    /**
+     * Reads a code length table and builds the canonical tree it describes
+     * @param inp The input to read from, at a byte boundary
+     * @return The Huffman tree of the canonical keywords
+     */
+    public static Huffman.Node readCodeLengths(BitInputStream inp)
+            throws IOException {
+        int flags = inp.readBits(8);
+        boolean[] present = new boolean[256];
+        int numSymbols = 0;
+        if ((flags & SYMBOL_BITMAP) != 0) {
+            for (int byt = 0; byt < present.length; ++byt) {
+                present[byt] = inp.readBits(1) == 1;
+                if (present[byt]) { ++numSymbols; }
+            }
+        } else {
+            numSymbols = inp.readBits(8) + 1;
+            for (int i = 0; i < numSymbols; ++i) {
+                present[inp.readBits(8)] = true;
+            }
+        }
+
+        if (numSymbols == 1) {
+            for (int byt = 0; byt < present.length; ++byt) {
+                if (present[byt]) { return new Huffman.Node(byt); }
+            }
+        }
+
+        int lengthBits = (flags & NIBBLE_LENGTHS) != 0 ? 4 : 8;
+        int[] lengths = new int[256];
+        int numBits = 0;
+        // sum of 2^-length over all keywords, scaled by 2^MAX_PACKED_LENGTH
+        long kraftSum = 0;
+        for (int byt = 0; byt < present.length; ++byt) {
+            if (!present[byt]) { continue; }
+            lengths[byt] = inp.readBits(lengthBits);
+            numBits += lengthBits;
+            if (lengths[byt] < 1 || lengths[byt] > Huffman.MAX_PACKED_LENGTH) {
+                throw new IOException("Invalid keyword length " + lengths[byt]);
+            }
+            kraftSum += 1L << (Huffman.MAX_PACKED_LENGTH - lengths[byt]);
+        }
+        if ((numBits & 7) != 0) {
+            inp.readBits(-numBits & 7);
+        }
+        // the keywords of a Huffman tree exactly fill the code space,
+        //   anything else means the header is corrupt
+        if (kraftSum != 1L << Huffman.MAX_PACKED_LENGTH) {
+            throw new IOException("Keyword lengths do not form a complete code");
+        }
+        return Huffman.canonicalTree(lengths);
+    }
+
+    /** Writes a non-negative long 7 bits at a time, lowest bits first */
+    public static void writeVarLong(BitOutputStream outp, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            outp.writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        outp.writeBits(value, 8);
+    }
+
+    /** Reads a long written by writeVarLong */
+    public static long readVarLong(BitInputStream inp) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = inp.readBits(8);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) { return value; }
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+
+    /** Writes a long as 8 bytes, highest first */
+    public static void writeLong(BitOutputStream outp, long value)
+            throws IOException {
+        outp.writeInt((int) (value >>> 32));
+        outp.writeInt((int) value);
+    }
+
+    /** Reads a long written by writeLong */
+    public static long readLong(BitInputStream inp) throws IOException {
+        long high = inp.readInt();
+        return high << 32 | inp.readInt() & 0xFFFFFFFFL;
+    }
+}
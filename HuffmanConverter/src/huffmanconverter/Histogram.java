@@ -0,0 +1,144 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the # of occurrences of each byte, in bulk
+ * Consecutive bytes are counted in different tables, merged at the end,
+ *   so a run of the same byte doesn't make every increment wait for the
+ *   previous one to the same counter
+ * Counts are kept as longs, so inputs over 2^31 bytes are counted correctly
+ * Separate Histograms can count separate chunks at the same time,
+ *   and be merged afterwards
+ * @author me
+ */
+public class Histogram {
+    /** The # of bytes read at a time when counting a stream */
+    private static final int CHUNK_SIZE = 1 << 22;
+
+    private final long[] counts = new long[256];
+    // the interleaved tables; only non-zero during add
+    private final int[] table0 = new int[256];
+    private final int[] table1 = new int[256];
+    private final int[] table2 = new int[256];
+    private final int[] table3 = new int[256];
+
+    /**
+     * Counts the bytes of part of an array
+     * @param buf The array holding the bytes
+     * @param off The index of the first byte to count
+     * @param len The # of bytes to count
+     */
+    public void add(byte[] buf, int off, int len) {
+        int i = off;
+        int end = off + len;
+        // len < 2^31, so none of the int tables can overflow
+        for (; i <= end - 4; i += 4) {
+            ++this.table0[buf[i] & 0xFF];
+            ++this.table1[buf[i + 1] & 0xFF];
+            ++this.table2[buf[i + 2] & 0xFF];
+            ++this.table3[buf[i + 3] & 0xFF];
+        }
+        for (; i < end; ++i) {
+            ++this.table0[buf[i] & 0xFF];
+        }
+        // then fold the tables into our counts, ready for the next call
+        for (int byt = 0; byt < 256; ++byt) {
+            this.counts[byt] += (long) this.table0[byt] + this.table1[byt]
+                    + this.table2[byt] + this.table3[byt];
+            this.table0[byt] = 0;
+            this.table1[byt] = 0;
+            this.table2[byt] = 0;
+            this.table3[byt] = 0;
+        }
+    }
+
+    /**
+     * Adds the counts of another Histogram to ours
+     * @param other The Histogram to add
+     */
+    public void merge(Histogram other) {
+        for (int byt = 0; byt < 256; ++byt) {
+            this.counts[byt] += other.counts[byt];
+        }
+    }
+
+    /** Forgets everything counted so far, so we can count another input */
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+    }
+
+    /** @return A long[256] with each value being the # of occurrences of the byte */
+    public long[] counts() {
+        return this.counts.clone();
+    }
+
+    /**
+     * Counts the bytes of a whole input on a single thread
+     * @param inp The input to count
+     * @return A long[256] with each value being the # of occurrences of the byte
+     */
+    public static long[] count(InputStream inp) throws IOException {
+        Histogram histogram = new Histogram();
+        byte[] buf = new byte[1 << 16];
+        int len;
+        while ((len = inp.read(buf)) != -1) {
+            histogram.add(buf, 0, len);
+        }
+        return histogram.counts();
+    }
+
+    /**
+     * Counts the bytes of a whole input, counting chunks of it in parallel
+     * @param inp The input to count
+     * @param threads The # of chunks to count at the same time
+     * @return A long[256] with each value being the # of occurrences of the byte
+     */
+    public static long[] count(InputStream inp, int threads) throws IOException {
+        if (threads <= 1) { return count(inp); }
+        Histogram total = new Histogram();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        // we keep up to 2 chunks per thread in flight, each counted into
+        //   its own Histogram and merged in once done
+        ArrayDeque<Future<Histogram>> pending = new ArrayDeque<>();
+        try {
+            while (true) {
+                final byte[] buf = new byte[CHUNK_SIZE];
+                final int len = Blocks.readFully(inp, buf);
+                if (len == 0) { break; }
+                pending.add(pool.submit(() -> {
+                    Histogram histogram = new Histogram();
+                    histogram.add(buf, 0, len);
+                    return histogram;
+                }));
+                if (pending.size() >= 2 * threads) {
+                    total.merge(await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                total.merge(await(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return total.counts();
+    }
+
+    /** Waits for a chunk to be counted, passing on any exception it threw */
+    private static Histogram await(Future<Histogram> histogram) throws IOException {
+        try {
+            return histogram.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while counting bytes", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -2,12 +2,20 @@ package huffmanconverter;
 
 import huffmanconverter.PriorityQueue.Element;
 import huffmanconverter.PriorityQueue.PQHeap;
+import java.util.Arrays;
 
 /**
  * 
  * @author me
  */
 public class Huffman {
+    /** The max keyword length toCodeTable can pack into a long */
+    public static final int MAX_PACKED_LENGTH = 56;
+    /** The keyword length limit used unless another one is asked for */
+    public static final int DEFAULT_MAX_LENGTH = 15;
+    /** The # of symbols of the largest alphabet linearCodeLengths accepts */
+    public static final int MAX_ALPHABET = 1 << 20;
+    
     /**
      * A node in a tree (possibly the root)
      * If the children are null, it is a leaf and has a byte (byt)
@@ -92,7 +100,18 @@ public class Huffman {
      * @return A String[256], with each value being the bit sequence used to refer to the byte
      */
     public static String[] toKeywords(Node tree) {
-        String[] keywords = new String[256];
+        return toKeywords(tree, 256);
+    }
+    
+    /**
+     * Converts a Huffman tree over any alphabet to a String[] of keywords
+     * @param tree The Huffman tree
+     * @param alphabetSize The # of symbols of the alphabet
+     * @return A String[alphabetSize], with each value being the bit sequence
+     *   used to refer to the symbol
+     */
+    public static String[] toKeywords(Node tree, int alphabetSize) {
+        String[] keywords = new String[alphabetSize];
         _toKeywordsHelper(tree, keywords, "");
         return keywords;
     }
@@ -108,4 +127,403 @@ public class Huffman {
             _toKeywordsHelper(node.right, table, curKeyword+"1");
         }
     }
+    
+    /**
+     * Converts a Huffman tree to a long[256] of packed codes
+     * Each value holds the bit sequence of the byte's keyword in its upper
+     *   bits and the keyword's length in its lowest 8 bits, so
+     *   (code >>> 8) is the keyword and (code & 0xFF) its length
+     * Unused bytes have a value of 0
+     * Keywords of up to MAX_PACKED_LENGTH bits can be packed; this always
+     *   holds for trees made from int frequencies, since a tree of depth d
+     *   needs a total frequency of at least the (d+2)'th Fibonacci number
+     * @param tree The Huffman tree
+     * @return A long[256], with each value being the packed keyword of the byte
+     */
+    public static long[] toCodeTable(Node tree) {
+        long[] codes = new long[256];
+        _toCodeTableHelper(tree, codes, 0, 0);
+        return codes;
+    }
+    
+    /** Calculates packed codes in the subtree and inserts them into the long[] */
+    private static void _toCodeTableHelper(
+            Node node, long[] table, long curCode, int curLength) {
+        if (node == null) { return; } // handle the case where we were given an empty file
+        if (node.isLeaf()) {
+            table[node.getByte()] = curCode << 8 | curLength;
+        } else {
+            if (curLength == MAX_PACKED_LENGTH) {
+                throw new IllegalStateException(
+                        "Huffman tree too deep to pack codes into a long");
+            }
+            _toCodeTableHelper(node.left, table, curCode << 1, curLength + 1);
+            _toCodeTableHelper(node.right, table, curCode << 1 | 1, curLength + 1);
+        }
+    }
+    
+    /**
+     * Converts a Huffman tree to an int[256] of keyword lengths
+     * Unused bytes have a length of 0, as does the lone byte of a tree
+     *   that is a single leaf
+     * @param tree The Huffman tree
+     * @return An int[256], with each value being the keyword length of the byte
+     */
+    public static int[] toCodeLengths(Node tree) {
+        int[] lengths = new int[256];
+        _toCodeLengthsHelper(tree, lengths, 0);
+        return lengths;
+    }
+    
+    /** Calculates keyword lengths in the subtree and inserts them into the int[] */
+    private static void _toCodeLengthsHelper(Node node, int[] lengths, int depth) {
+        if (node == null) { return; } // handle the case where we were given an empty file
+        if (node.isLeaf()) {
+            lengths[node.getByte()] = depth;
+        } else {
+            _toCodeLengthsHelper(node.left, lengths, depth + 1);
+            _toCodeLengthsHelper(node.right, lengths, depth + 1);
+        }
+    }
+    
+    /**
+     * Assigns canonical keywords from keyword lengths
+     * Keywords are handed out in order of length, then byte value, each one
+     *   being the previous keyword plus one, shifted left to the new length
+     * This way only the lengths need to be stored to recreate the keywords
+     * The first keyword of each length follows from the # of keywords of
+     *   every shorter length, so each keyword is handed out in one pass
+     * @param lengths An int[] of keyword lengths, 0 for unused symbols;
+     *   an int[256] for bytes, but any alphabet works
+     * @return A long[] of packed keywords, in the format of toCodeTable
+     */
+    public static long[] canonicalCodeTable(int[] lengths) {
+        int[] numOfLength = new int[MAX_PACKED_LENGTH + 1];
+        for (int length : lengths) {
+            if (length < 0 || length > MAX_PACKED_LENGTH) {
+                throw new IllegalArgumentException(
+                        "Keyword length " + length + " can't be packed into a long");
+            }
+            ++numOfLength[length];
+        }
+        numOfLength[0] = 0;
+        long[] nextCode = new long[MAX_PACKED_LENGTH + 1];
+        long code = 0;
+        for (int length = 1; length <= MAX_PACKED_LENGTH; ++length) {
+            code = (code + numOfLength[length - 1]) << 1;
+            nextCode[length] = code;
+        }
+        long[] codes = new long[lengths.length];
+        for (int sym = 0; sym < lengths.length; ++sym) {
+            int length = lengths[sym];
+            if (length != 0) {
+                codes[sym] = nextCode[length]++ << 8 | length;
+            }
+        }
+        return codes;
+    }
+    
+    /**
+     * Builds the Huffman tree of the canonical keywords for keyword lengths
+     * @param lengths An int[256] of keyword lengths, 0 for unused bytes
+     * @return A Node which represents the whole tree, or null if no byte is used
+     */
+    public static Node canonicalTree(int[] lengths) {
+        long[] codes = canonicalCodeTable(lengths);
+        Node root = null;
+        for (int byt = 0; byt < codes.length; ++byt) {
+            int length = (int) codes[byt] & 0xFF;
+            if (length == 0) { continue; }
+            if (root == null) { root = new Node(null, null); }
+            // walk down from the root along the keyword, creating internal
+            //   nodes as needed, and put the leaf at the end
+            Node node = root;
+            for (int bit = length - 1; bit > 0; --bit) {
+                boolean isRight = ((codes[byt] >>> (8 + bit)) & 1) == 1;
+                Node child = isRight ? node.right : node.left;
+                if (child == null) {
+                    child = new Node(null, null);
+                    if (isRight) { node.right = child; } else { node.left = child; }
+                }
+                node = child;
+            }
+            if ((codes[byt] >>> 8 & 1) == 1) {
+                node.right = new Node(byt);
+            } else {
+                node.left = new Node(byt);
+            }
+        }
+        return root;
+    }
+    
+    /**
+     * Generates the keyword lengths of an optimal code for a frequency table
+     * Uses linearCodeLengths, and package-merge with the longest keywords
+     *   we can pack if that needs even longer ones
+     * @param byteTable A long[] with each value being the # of occurrences of the byte
+     * @return An int[256] of keyword lengths, in the format of toCodeLengths
+     */
+    public static int[] optimalLengths(long[] byteTable) {
+        int[] lengths = linearCodeLengths(byteTable);
+        for (int length : lengths) {
+            if (length > MAX_PACKED_LENGTH) {
+                return limitedCodeLengths(byteTable, MAX_PACKED_LENGTH);
+            }
+        }
+        return lengths;
+    }
+    
+    /**
+     * Calculates the keyword lengths of an optimal code over any alphabet,
+     *   without building a tree or allocating per symbol
+     * Sorts the used symbols by weight once, after which the two-queue
+     *   method builds the tree in linear time, in place in a single long[]
+     *   (Moffat and Katajainen, 1995):
+     *   first the weights are merged from the lightest up, each merged
+     *     weight replacing the one at the next free index and the merged
+     *     items being replaced by the index of their parent,
+     *   then parent indices are turned into depths from the root down,
+     *   then the depths of the internal nodes give the depths of the leaves
+     * The leaves come out in order of depth, deepest first, matching the
+     *   order of the weights, lightest first
+     * @param weights The weight of each symbol, 0 for unused symbols
+     * @return An int[] of keyword lengths, 0 for unused symbols
+     *   and for a lone used symbol
+     */
+    public static int[] linearCodeLengths(long[] weights) {
+        int[] lengths = new int[weights.length];
+        int[] symbols = sortedSymbols(weights);
+        int n = symbols.length;
+        if (n <= 1) { return lengths; }
+        long[] a = new long[n];
+        for (int i = 0; i < n; ++i) {
+            a[i] = weights[symbols[i]];
+        }
+        
+        // merge; leaf is the next unmerged weight, root the next unmerged
+        //   internal node, and next the internal node being made
+        int leaf = 0;
+        int root = 0;
+        for (int next = 0; next < n - 1; ++next) {
+            if (leaf >= n || (root < next && a[root] < a[leaf])) {
+                a[next] = a[root];
+                a[root++] = next;
+            } else {
+                a[next] = a[leaf++];
+            }
+            if (leaf >= n || (root < next && a[root] < a[leaf])) {
+                a[next] += a[root];
+                a[root++] = next;
+            } else {
+                a[next] += a[leaf++];
+            }
+        }
+        
+        // parent indices to depths of the internal nodes
+        a[n - 2] = 0;
+        for (int next = n - 3; next >= 0; --next) {
+            a[next] = a[(int) a[next]] + 1;
+        }
+        
+        // every level has twice as many nodes as the last one has internal
+        //   nodes; the rest of them are leaves
+        int avail = 1;
+        int used = 0;
+        long depth = 0;
+        root = n - 2;
+        int next = n - 1;
+        while (avail > 0) {
+            while (root >= 0 && a[root] == depth) {
+                ++used;
+                --root;
+            }
+            while (avail > used) {
+                a[next--] = depth;
+                --avail;
+            }
+            avail = 2 * used;
+            ++depth;
+            used = 0;
+        }
+        
+        for (int i = 0; i < n; ++i) {
+            lengths[symbols[i]] = (int) a[i];
+        }
+        return lengths;
+    }
+    
+    /**
+     * Sorts the used symbols of an alphabet by weight, lightest first,
+     *   breaking ties by symbol
+     * @param weights The weight of each symbol, 0 for unused symbols
+     * @return The used symbols, in order
+     */
+    private static int[] sortedSymbols(long[] weights) {
+        if (weights.length > MAX_ALPHABET) {
+            throw new IllegalArgumentException("Alphabet of " + weights.length
+                    + " symbols is larger than " + MAX_ALPHABET);
+        }
+        int n = 0;
+        long maxWeight = 0;
+        for (long weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight " + weight);
+            }
+            if (weight != 0) { ++n; }
+            maxWeight = Math.max(maxWeight, weight);
+        }
+        int[] symbols = new int[n];
+        int symbolBits = 32 - Integer.numberOfLeadingZeros(MAX_ALPHABET - 1);
+        if (maxWeight < 1L << (63 - symbolBits)) {
+            // pack weight and symbol into one long, so a primitive sort does it
+            long[] keys = new long[n];
+            int k = 0;
+            for (int sym = 0; sym < weights.length; ++sym) {
+                if (weights[sym] != 0) { keys[k++] = weights[sym] << symbolBits | sym; }
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < n; ++i) {
+                symbols[i] = (int) (keys[i] & (MAX_ALPHABET - 1));
+            }
+        } else {
+            Integer[] boxed = new Integer[n];
+            int k = 0;
+            for (int sym = 0; sym < weights.length; ++sym) {
+                if (weights[sym] != 0) { boxed[k++] = sym; }
+            }
+            Arrays.sort(boxed, (x, y) -> weights[x] != weights[y]
+                    ? Long.compare(weights[x], weights[y])
+                    : Integer.compare(x, y));
+            for (int i = 0; i < n; ++i) {
+                symbols[i] = boxed[i];
+            }
+        }
+        return symbols;
+    }
+    
+    /**
+     * Generates keyword lengths from a frequency table, with no keyword
+     *   longer than a limit
+     * Uses the optimal lengths if they are within the limit,
+     *   otherwise falls back to limitedCodeLengths
+     * @param byteTable A long[] with each value being the # of occurrences of the byte
+     * @param maxLength The max keyword length
+     * @return An int[256] of keyword lengths, in the format of toCodeLengths
+     */
+    public static int[] generateLengths(long[] byteTable, int maxLength) {
+        return limitLengths(byteTable, optimalLengths(byteTable), maxLength);
+    }
+    
+    /**
+     * Limits already generated optimal keyword lengths, for callers that
+     *   want the optimal ones too
+     * @param byteTable A long[] with each value being the # of occurrences of the byte
+     * @param optimal The lengths optimalLengths gave for the byte table
+     * @param maxLength The max keyword length
+     * @return optimal itself if it is within the limit, otherwise new
+     *   lengths from limitedCodeLengths
+     */
+    public static int[] limitLengths(long[] byteTable, int[] optimal, int maxLength) {
+        for (int length : optimal) {
+            if (length > maxLength) {
+                return limitedCodeLengths(byteTable, maxLength);
+            }
+        }
+        return optimal;
+    }
+    
+    /**
+     * Calculates optimal keyword lengths with no keyword longer than a limit
+     * Uses the package-merge algorithm: starting from the symbols sorted by
+     *   weight, we maxLength-1 times pair up neighbours of the current list
+     *   into packages and merge those with the symbols into a new list
+     * Taking the 2n-2 lightest items of the last list, every time a symbol
+     *   appears, directly or inside a package, adds one to its length
+     * @param weights The weight of each symbol, 0 for unused symbols
+     * @param maxLength The max keyword length
+     * @return An int[] of keyword lengths, 0 for unused symbols
+     *   and for a lone used symbol
+     */
+    public static int[] limitedCodeLengths(long[] weights, int maxLength) {
+        int[] lengths = new int[weights.length];
+        int[] symbols = sortedSymbols(weights);
+        int n = symbols.length;
+        if (n <= 1) { return lengths; }
+        if (maxLength < 1 || maxLength < 64 && 1L << maxLength < n) {
+            throw new IllegalArgumentException(
+                    n + " symbols don't fit in keywords of " + maxLength + " bits");
+        }
+        // there's never a point in going deeper than n-1
+        maxLength = Math.min(maxLength, n - 1);
+        
+        // each list holds the weights of its items, and for each item the
+        //   symbol it is, or -1 if it is a package of two items of the
+        //   previous list
+        long[][] listWeights = new long[maxLength][];
+        int[][] listSymbols = new int[maxLength][];
+        int[] listSizes = new int[maxLength];
+        listWeights[0] = new long[n];
+        listSymbols[0] = new int[n];
+        for (int i = 0; i < n; ++i) {
+            listWeights[0][i] = weights[symbols[i]];
+            listSymbols[0][i] = symbols[i];
+        }
+        listSizes[0] = n;
+        for (int level = 1; level < maxLength; ++level) {
+            long[] prevWeights = listWeights[level - 1];
+            int numPackages = listSizes[level - 1] / 2;
+            long[] curWeights = new long[n + numPackages];
+            int[] curSymbols = new int[n + numPackages];
+            // merge the symbols and packages, both already sorted
+            int leaf = 0;
+            int pkg = 0;
+            for (int i = 0; i < curWeights.length; ++i) {
+                long pkgWeight = pkg < numPackages
+                        ? prevWeights[2*pkg] + prevWeights[2*pkg + 1]
+                        : Long.MAX_VALUE;
+                if (leaf < n && weights[symbols[leaf]] <= pkgWeight) {
+                    curWeights[i] = weights[symbols[leaf]];
+                    curSymbols[i] = symbols[leaf++];
+                } else {
+                    curWeights[i] = pkgWeight;
+                    curSymbols[i] = -1;
+                    ++pkg;
+                }
+            }
+            listWeights[level] = curWeights;
+            listSymbols[level] = curSymbols;
+            listSizes[level] = curWeights.length;
+        }
+        
+        // the taken packages of a list are always its first ones, which are
+        //   made of the first items of the previous list
+        int numTaken = 2*n - 2;
+        for (int level = maxLength - 1; level >= 0; --level) {
+            int numPackages = 0;
+            for (int i = 0; i < numTaken; ++i) {
+                int sym = listSymbols[level][i];
+                if (sym == -1) {
+                    ++numPackages;
+                } else {
+                    ++lengths[sym];
+                }
+            }
+            numTaken = 2*numPackages;
+        }
+        return lengths;
+    }
+    
+    /**
+     * Calculates the # of bits keywords of some lengths take up
+     * @param byteTable A long[] with each value being the # of occurrences of the byte
+     * @param lengths The keyword length of each byte
+     * @return The total # of bits of the encoded data
+     */
+    public static long encodedBits(long[] byteTable, int[] lengths) {
+        long bits = 0;
+        for (int byt = 0; byt < byteTable.length; ++byt) {
+            bits += byteTable[byt] * lengths[byt];
+        }
+        return bits;
+    }
 }
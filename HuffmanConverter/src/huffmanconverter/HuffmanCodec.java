@@ -0,0 +1,232 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes short messages in memory with a fixed, pretrained code
+ * The code is built once from a training histogram, so messages carry no
+ *   table of their own and nothing is rebuilt per message
+ * Every byte gets a keyword, even ones the training data never had, so any
+ *   message can be encoded
+ * A codec never changes once built, so a single one can be shared by any
+ *   number of threads
+ * A message is encoded as:
+ *     varint  # of encoded bytes
+ *     the keywords of the bytes, padded to a whole byte
+ * To tell the receiver which codec a message uses, see CodecRegistry
+ * @author me
+ */
+public final class HuffmanCodec {
+    /**
+     * The max keyword length of a codec
+     * Keeps the decoding table small enough to stay in cache,
+     *   at a negligible cost in compression
+     */
+    public static final int MAX_LENGTH = 12;
+
+    /** The packed keyword of each byte, in the format of Huffman.toCodeTable */
+    private final long[] codes;
+    /** The keyword length of each byte */
+    private final int[] lengths;
+    /** The # of bits decodeTable is indexed by; the longest keyword's length */
+    private final int tableBits;
+    /**
+     * For every tableBits bits of input, the byte whose keyword they start
+     *   with in bits 8-15, and the length of that keyword in bits 0-7
+     */
+    private final int[] decodeTable;
+
+    /**
+     * Trains a codec on a histogram
+     * @param histogram A long[256] with each value being the # of occurrences
+     *   of the byte in the training data, as made by Histogram
+     */
+    public HuffmanCodec(long[] histogram) {
+        this(Huffman.generateLengths(smooth(histogram), MAX_LENGTH));
+    }
+
+    /** Builds a codec from the keyword lengths of a complete code over all bytes */
+    private HuffmanCodec(int[] lengths) {
+        this.lengths = lengths;
+        this.codes = Huffman.canonicalCodeTable(lengths);
+        int maxLength = 0;
+        for (int length : lengths) {
+            maxLength = Math.max(maxLength, length);
+        }
+        this.tableBits = maxLength;
+        this.decodeTable = new int[1 << maxLength];
+        // a keyword fills every table entry whose index starts with it
+        for (int byt = 0; byt < 256; ++byt) {
+            int length = lengths[byt];
+            int first = (int) (this.codes[byt] >>> 8) << (maxLength - length);
+            Arrays.fill(this.decodeTable, first, first + (1 << (maxLength - length)),
+                    byt << 8 | length);
+        }
+    }
+
+    /** @return A copy of a histogram with every byte seen at least once */
+    private static long[] smooth(long[] histogram) {
+        if (histogram.length != 256) {
+            throw new IllegalArgumentException("Histogram must have 256 counts");
+        }
+        long[] counts = new long[256];
+        for (int byt = 0; byt < 256; ++byt) {
+            counts[byt] = Math.max(histogram[byt], 1);
+        }
+        return counts;
+    }
+
+    /**
+     * Writes the code of this codec, so the other end can read the same one
+     * @param outp The output to write to, at a byte boundary
+     */
+    public void writeTable(BitOutputStream outp) throws IOException {
+        long[] present = new long[256];
+        Arrays.fill(present, 1);
+        Format.writeCodeLengths(outp, present, this.lengths);
+    }
+
+    /**
+     * Reads a codec written by writeTable
+     * @param inp The input to read from, at a byte boundary
+     * @return The codec
+     */
+    public static HuffmanCodec readTable(BitInputStream inp) throws IOException {
+        int[] lengths = Huffman.toCodeLengths(Format.readCodeLengths(inp));
+        for (int length : lengths) {
+            if (length == 0 || length > MAX_LENGTH) {
+                throw new IOException("Not the code table of a codec");
+            }
+        }
+        return new HuffmanCodec(lengths);
+    }
+
+    /**
+     * @param len The # of bytes of a message
+     * @return The max # of bytes the message can take up once encoded
+     */
+    public int maxEncodedLength(int len) {
+        return (int) Math.min(Integer.MAX_VALUE,
+                5 + ((long) len * this.tableBits + 7) / 8);
+    }
+
+    /**
+     * Encodes the remaining bytes of src as a message into dst
+     * Afterwards src is at its limit and dst is just past the message
+     * @param src The bytes to encode
+     * @param dst The buffer to write the message to
+     * @return The # of bytes written to dst
+     * @throws BufferOverflowException If dst does not have room for the
+     *   message, in which case neither buffer is changed
+     */
+    public int encode(ByteBuffer src, ByteBuffer dst) {
+        // we read and write by index and only move the buffers once the
+        //   message is done, so a full dst leaves both as they were
+        int dstStart = dst.position();
+        try {
+            putVarInt(dst, src.remaining());
+        } catch (BufferOverflowException e) {
+            dst.position(dstStart);
+            throw e;
+        }
+        int out = dst.position();
+        dst.position(dstStart);
+        int outLimit = dst.limit();
+        long bits = 0;
+        int numBits = 0;
+        for (int pos = src.position(), end = src.limit(); pos < end; ++pos) {
+            long code = this.codes[src.get(pos) & 0xFF];
+            bits = bits << (code & 0xFF) | code >>> 8;
+            numBits += (int) code & 0xFF;
+            while (numBits >= 8) {
+                if (out == outLimit) { throw new BufferOverflowException(); }
+                numBits -= 8;
+                dst.put(out++, (byte) (bits >>> numBits));
+            }
+        }
+        if (numBits > 0) {
+            if (out == outLimit) { throw new BufferOverflowException(); }
+            dst.put(out++, (byte) (bits << (8 - numBits)));
+        }
+        src.position(src.limit());
+        dst.position(out);
+        return out - dstStart;
+    }
+
+    /**
+     * Decodes a message from src into dst
+     * Afterwards src is just past the message, so messages written after
+     *   each other can be decoded one at a time
+     * @param src The buffer holding the message, at its start
+     * @param dst The buffer to write the decoded bytes to
+     * @return The # of bytes written to dst
+     * @throws BufferOverflowException If dst does not have room for the
+     *   decoded bytes, in which case neither buffer is changed
+     * @throws BufferUnderflowException If the message is cut short,
+     *   in which case neither buffer is changed
+     */
+    public int decode(ByteBuffer src, ByteBuffer dst) {
+        // we read src by index and only move it once the message is done,
+        //   so bytes we buffered past the end of the message aren't lost
+        int pos = src.position();
+        int limit = src.limit();
+        int len = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos == limit || shift > 28) { throw new BufferUnderflowException(); }
+            int b = src.get(pos++);
+            len |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) { break; }
+        }
+        if (len < 0) { throw new BufferUnderflowException(); }
+        if (len > dst.remaining()) { throw new BufferOverflowException(); }
+
+        int out = dst.position();
+        int mask = (1 << this.tableBits) - 1;
+        long bits = 0;
+        int numBits = 0;
+        for (int end = out + len; out < end; ++out) {
+            if (numBits < this.tableBits) {
+                while (numBits <= 56 && pos < limit) {
+                    bits = bits << 8 | (src.get(pos++) & 0xFF);
+                    numBits += 8;
+                }
+            }
+            // past the end of src we look up with 0's in place of missing bits
+            int index = numBits >= this.tableBits
+                    ? (int) (bits >>> (numBits - this.tableBits)) & mask
+                    : (int) (bits << (this.tableBits - numBits)) & mask;
+            int entry = this.decodeTable[index];
+            if ((entry & 0xFF) > numBits) { throw new BufferUnderflowException(); }
+            numBits -= entry & 0xFF;
+            dst.put(out, (byte) (entry >>> 8));
+        }
+        dst.position(out);
+        // whole bytes still buffered belong to whatever follows the message
+        src.position(pos - numBits / 8);
+        return len;
+    }
+
+    /** Writes a non-negative int 7 bits at a time, lowest bits first */
+    static void putVarInt(ByteBuffer dst, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+
+    /** Reads an int written by putVarInt */
+    static int getVarInt(ByteBuffer src) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = src.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) { return value; }
+        }
+        throw new IllegalArgumentException("Malformed variable-length number");
+    }
+}
@@ -0,0 +1,81 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An InputStream reading a file through memory mapped chunks
+ * Reads are plain copies out of the mapping, so there is no system call
+ *   or lock per read, and files over 2 GB are covered chunk by chunk
+ * @author me
+ */
+public class MappedInputStream extends InputStream {
+    /** The # of bytes mapped at a time */
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    /** The currently mapped chunk, or null before the first read */
+    private MappedByteBuffer chunk;
+    /** The position in the file of the start of chunk */
+    private long chunkStart = 0;
+
+    /**
+     * Opens a file for reading
+     * @param filename The file to read
+     */
+    public MappedInputStream(String filename) throws IOException {
+        this.file = new RandomAccessFile(filename, "r");
+        this.channel = this.file.getChannel();
+        this.size = this.channel.size();
+    }
+
+    /**
+     * Makes sure the current chunk has bytes left, mapping the next one
+     *   if needed
+     * @return Whether there are bytes left in the file
+     */
+    private boolean ensureMapped() throws IOException {
+        if (this.chunk != null && this.chunk.hasRemaining()) { return true; }
+        long next = this.chunk == null ? 0 : this.chunkStart + this.chunk.capacity();
+        if (next >= this.size) { return false; }
+        this.chunkStart = next;
+        this.chunk = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                next, Math.min(CHUNK_SIZE, this.size - next));
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureMapped()) { return -1; }
+        return this.chunk.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) { return 0; }
+        if (!ensureMapped()) { return -1; }
+        // stop at the end of the chunk; the caller will come back for more
+        int n = Math.min(len, this.chunk.remaining());
+        this.chunk.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        long left = this.chunk == null ? this.size
+                : this.size - this.chunkStart - this.chunk.position();
+        return (int) Math.min(left, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mapping itself is released once it is garbage collected
+        this.chunk = null;
+        this.file.close();
+    }
+}
@@ -0,0 +1,127 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An OutputStream writing a file through memory mapped chunks
+ * Writes are plain copies into the mapping, which the OS writes back to
+ *   the file, so there is no system call or lock per write
+ * Only the part of the file given to presize is ever mapped, so the file
+ *   never has to be cut down while a mapping is live, which Windows
+ *   refuses; bytes past it, or every byte if presize isn't called, are
+ *   buffered and written through the file's channel instead
+ * @author me
+ */
+public class MappedOutputStream extends OutputStream {
+    /** The max # of bytes mapped at a time */
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    /** The # of bytes buffered before writing them through the channel */
+    private static final int TAIL_BUFFER_SIZE = 1 << 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    /** The size given to presize, or 0 if none was given */
+    private long expectedSize = 0;
+    /** The currently mapped chunk, or null before the first mapped write */
+    private MappedByteBuffer chunk;
+    /** Bytes past expectedSize waiting to be written through the channel */
+    private final ByteBuffer tail = ByteBuffer.allocate(TAIL_BUFFER_SIZE);
+    /** The # of bytes written so far, including those in tail */
+    private long position = 0;
+
+    /**
+     * Creates a file for writing, emptying it if it already exists
+     * @param filename The file to write
+     */
+    public MappedOutputStream(String filename) throws IOException {
+        this.file = new RandomAccessFile(filename, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+    }
+
+    /**
+     * Sizes the file up front for a known # of bytes, which can then be
+     *   written through memory mapping
+     * Should be called once, before the bytes it covers are written;
+     *   writing more is still allowed, the rest just isn't mapped
+     * @param size The # of bytes that will be written in total
+     */
+    public void presize(long size) throws IOException {
+        flushTail();
+        this.expectedSize = size;
+        this.file.setLength(size);
+    }
+
+    /**
+     * Makes sure the current chunk has room left, mapping the next one if
+     *   there is more of the presized file left to map
+     * @return Whether there is room, rather than the write going to tail
+     */
+    private boolean ensureMapped() throws IOException {
+        if (this.chunk != null && this.chunk.hasRemaining()) { return true; }
+        if (this.position >= this.expectedSize) { return false; }
+        long len = Math.min(MAX_CHUNK_SIZE, this.expectedSize - this.position);
+        this.chunk = this.channel.map(FileChannel.MapMode.READ_WRITE, this.position, len);
+        return true;
+    }
+
+    /** Writes the bytes in tail through the channel, where they belong */
+    private void flushTail() throws IOException {
+        this.tail.flip();
+        long at = this.position - this.tail.remaining();
+        while (this.tail.hasRemaining()) {
+            at += this.channel.write(this.tail, at);
+        }
+        this.tail.clear();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (ensureMapped()) {
+            this.chunk.put((byte) b);
+        } else {
+            if (!this.tail.hasRemaining()) { flushTail(); }
+            this.tail.put((byte) b);
+        }
+        ++this.position;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n;
+            if (ensureMapped()) {
+                n = Math.min(len, this.chunk.remaining());
+                this.chunk.put(b, off, n);
+            } else {
+                if (!this.tail.hasRemaining()) { flushTail(); }
+                n = Math.min(len, this.tail.remaining());
+                this.tail.put(b, off, n);
+            }
+            this.position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushTail();
+            // only if fewer bytes were written than presize promised, as
+            //   when the writer failed; the file is cut down to what we
+            //   have, which fails on Windows while the last chunk is mapped
+            if (this.position < this.expectedSize) {
+                this.chunk = null;
+                this.file.setLength(this.position);
+            }
+        } finally {
+            this.file.close();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package huffmanconverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Overlaps reading, coding and writing, so the disk doesn't sit idle
+ *   while we code, nor the CPU while we wait for the disk
+ * The reader stage reads ahead into a few reusable buffers on a thread of
+ *   its own, and the writer stage writes filled buffers out on another
+ * Coding happens on the calling thread in between, through the streams
+ *   made by reader and writer
+ * Stages are linked by bounded queues, so only a fixed # of buffers are
+ *   ever in flight, and a full queue holds back the stage filling it
+ * @author me
+ */
+public class Pipeline implements Closeable {
+    /** The # of bytes in each buffer */
+    public static final int BUFFER_SIZE = 1 << 20;
+    /** The # of buffers each stream cycles through */
+    public static final int NUM_BUFFERS = 4;
+
+    /** A buffer passed between stages */
+    private static class Buffer {
+        final byte[] data;
+        int len;
+        /** Set instead of data when reading failed */
+        IOException error;
+
+        Buffer(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+    /** Marks the end of the stream in a queue */
+    private static final Buffer END = new Buffer(0);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long start = System.nanoTime();
+    // the time each stage spent working, and the time coding spent waiting
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    /**
+     * Starts reading an input ahead on the reader stage
+     * @param inp The input to read
+     * @return A stream of the bytes of inp, closing inp when closed
+     */
+    public InputStream reader(InputStream inp) {
+        return new Reader(inp);
+    }
+
+    /**
+     * Starts a writer stage for an output
+     * @param outp The output to write to
+     * @return A stream writing to outp once a buffer is full,
+     *   closing outp when closed
+     */
+    public OutputStream writer(OutputStream outp) {
+        return new Writer(outp);
+    }
+
+    /** Waits for a buffer from a queue, counting the time as coding waiting */
+    private Buffer take(BlockingQueue<Buffer> queue) throws IOException {
+        long waitStart = System.nanoTime();
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a buffer", e);
+        } finally {
+            this.waitNanos.addAndGet(System.nanoTime() - waitStart);
+        }
+    }
+
+    /** Hands a buffer on to a queue, counting the time as coding waiting */
+    private void put(BlockingQueue<Buffer> queue, Buffer buffer) throws IOException {
+        long waitStart = System.nanoTime();
+        try {
+            queue.put(buffer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a buffer", e);
+        } finally {
+            this.waitNanos.addAndGet(System.nanoTime() - waitStart);
+        }
+    }
+
+    /** Reads its input ahead on a separate thread */
+    private class Reader extends InputStream {
+        private final InputStream inp;
+        /** Buffers ready to be read into */
+        private final BlockingQueue<Buffer> free = new ArrayBlockingQueue<>(NUM_BUFFERS);
+        /** Buffers read into, in order, followed by END */
+        private final BlockingQueue<Buffer> filled = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+        private final Future<?> task;
+        /** The buffer being read from, or null if we need the next one */
+        private Buffer current;
+        private int pos;
+        private boolean isEnd = false;
+
+        Reader(InputStream inp) {
+            this.inp = inp;
+            for (int i = 0; i < NUM_BUFFERS; ++i) {
+                this.free.add(new Buffer(BUFFER_SIZE));
+            }
+            this.task = Pipeline.this.executor.submit(this::readAll);
+        }
+
+        /** The reader stage; fills free buffers until the input ends */
+        private void readAll() {
+            try {
+                while (true) {
+                    Buffer buffer = this.free.take();
+                    long readStart = System.nanoTime();
+                    try {
+                        buffer.len = Blocks.readFully(this.inp, buffer.data);
+                    } catch (IOException e) {
+                        buffer.error = e;
+                    }
+                    Pipeline.this.readNanos.addAndGet(System.nanoTime() - readStart);
+                    if (buffer.error != null) {
+                        this.filled.put(buffer);
+                        return;
+                    }
+                    if (buffer.len > 0) { this.filled.put(buffer); }
+                    if (buffer.len < buffer.data.length) {
+                        this.filled.put(END);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // we were closed before reaching the end
+            }
+        }
+
+        /**
+         * Moves on to the next filled buffer, handing the current one back
+         * @return Whether there are bytes left
+         */
+        private boolean next() throws IOException {
+            if (this.current != null) {
+                this.free.add(this.current);
+                this.current = null;
+            }
+            if (this.isEnd) { return false; }
+            Buffer buffer = take(this.filled);
+            if (buffer == END || buffer.error != null) {
+                this.isEnd = true;
+                if (buffer.error != null) { throw buffer.error; }
+                return false;
+            }
+            this.current = buffer;
+            this.pos = 0;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if ((this.current == null || this.pos == this.current.len) && !next()) {
+                return -1;
+            }
+            return this.current.data[this.pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) { return 0; }
+            if ((this.current == null || this.pos == this.current.len) && !next()) {
+                return -1;
+            }
+            int n = Math.min(len, this.current.len - this.pos);
+            System.arraycopy(this.current.data, this.pos, b, off, n);
+            this.pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.task.cancel(true);
+            this.inp.close();
+        }
+    }
+
+    /** Writes its output on a separate thread */
+    private class Writer extends OutputStream {
+        private final OutputStream outp;
+        /** Buffers ready to be written into */
+        private final BlockingQueue<Buffer> free = new ArrayBlockingQueue<>(NUM_BUFFERS);
+        /** Buffers written into, in order, followed by END */
+        private final BlockingQueue<Buffer> filled = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+        private final Future<?> task;
+        /** The first error writing hit, after which it only hands buffers back */
+        private volatile IOException error;
+        /** The buffer being written into */
+        private Buffer current;
+        private boolean isClosed = false;
+
+        Writer(OutputStream outp) {
+            this.outp = outp;
+            for (int i = 0; i < NUM_BUFFERS - 1; ++i) {
+                this.free.add(new Buffer(BUFFER_SIZE));
+            }
+            this.current = new Buffer(BUFFER_SIZE);
+            this.task = Pipeline.this.executor.submit(this::writeAll);
+        }
+
+        /** The writer stage; writes filled buffers until END */
+        private void writeAll() {
+            try {
+                Buffer buffer;
+                while ((buffer = this.filled.take()) != END) {
+                    // after an error we still hand buffers back,
+                    //   so the coding thread is never stuck waiting for one
+                    if (this.error == null) {
+                        long writeStart = System.nanoTime();
+                        try {
+                            this.outp.write(buffer.data, 0, buffer.len);
+                        } catch (IOException e) {
+                            this.error = e;
+                        }
+                        Pipeline.this.writeNanos.addAndGet(System.nanoTime() - writeStart);
+                    }
+                    buffer.len = 0;
+                    this.free.put(buffer);
+                }
+            } catch (InterruptedException e) {
+                // we were closed before reaching the end
+            }
+        }
+
+        /** Hands the current buffer to the writer stage and takes a free one */
+        private void pass() throws IOException {
+            if (this.error != null) { throw this.error; }
+            put(this.filled, this.current);
+            this.current = take(this.free);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.current.len == this.current.data.length) { pass(); }
+            this.current.data[this.current.len++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (this.current.len == this.current.data.length) { pass(); }
+                int n = Math.min(len, this.current.data.length - this.current.len);
+                System.arraycopy(b, off, this.current.data, this.current.len, n);
+                this.current.len += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Writes out everything written so far, waiting for the writer stage */
+        @Override
+        public void close() throws IOException {
+            if (this.isClosed) { return; }
+            this.isClosed = true;
+            try {
+                if (this.current.len > 0) { put(this.filled, this.current); }
+                put(this.filled, END);
+                this.task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } finally {
+                this.outp.close();
+            }
+            if (this.error != null) { throw this.error; }
+        }
+    }
+
+    /**
+     * Reports the share of the time since we started that each stage spent
+     *   working, to stderr
+     * Whichever stage is close to 100% is the one holding the others back
+     */
+    public void report() {
+        double elapsed = System.nanoTime() - this.start;
+        System.err.printf(
+                "\u001B[36m[Info] Pipeline over %.2f s; read %.0f%% busy, code %.0f%% busy, write %.0f%% busy%n",
+                elapsed / 1e9,
+                100 * this.readNanos.get() / elapsed,
+                100 * (elapsed - this.waitNanos.get()) / elapsed,
+                100 * this.writeNanos.get() / elapsed);
+    }
+
+    /** Stops any stage still running */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
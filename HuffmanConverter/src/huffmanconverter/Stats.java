@@ -0,0 +1,230 @@
+package huffmanconverter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts where the time of a run of Encode or Decode goes
+ * Each phase of a run records its wall time, the # of bytes it worked on,
+ *   and the # of bytes this thread allocated during it
+ * The run as a whole records the bytes in and out, and for a single code
+ *   table its average keyword length, the entropy of the input and the
+ *   longest keyword
+ * Every phase and run is also a JFR event, so they show up in any
+ *   recording made with -XX:StartFlightRecording
+ * Setting up JFR and allocation counting takes a few hundred ms, so
+ *   events are only made when JFR is already running, and allocations
+ *   only counted when asked for or recording
+ * JFR is looked up by reflection, and its events live in StatsEvents,
+ *   which is only loaded while recording, so this runs on Java 8
+ * The counters of the latest run are kept, for anyone running Encode or
+ *   Decode in the same JVM to read
+ * @author me
+ */
+public class Stats {
+    /** A phase of a run; closing it records it */
+    public class Phase implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final long startAllocated = countAllocations ? allocatedBytes() : 0;
+        /** The phase's JFR event while recording, else null */
+        private final Object event;
+        private long bytes = 0;
+        private long nanos;
+        private long allocated;
+
+        private Phase(String name) {
+            this.name = name;
+            this.event = isRecording ? StatsEvents.beginPhase() : null;
+        }
+
+        /** Sets the # of bytes the phase worked on, for its throughput */
+        public void bytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            this.nanos = System.nanoTime() - this.start;
+            this.allocated = countAllocations ? allocatedBytes() - this.startAllocated : 0;
+            if (this.event != null) {
+                StatsEvents.commitPhase(this.event, this.name, this.bytes, this.allocated);
+            }
+            synchronized (Stats.this) {
+                Stats.this.phases.add(this);
+            }
+        }
+    }
+
+    /** Only loaded once allocations are counted, since that takes a while */
+    private static class Threads {
+        static final ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+    }
+    private static volatile Stats latest;
+
+    private final String operation;
+    private final long start = System.nanoTime();
+    private final boolean isRecording = isRecording();
+    private final boolean countAllocations;
+    /** The run's JFR event while recording, else null */
+    private final Object event = this.isRecording ? StatsEvents.beginRun() : null;
+    private final List<Phase> phases = new ArrayList<>();
+    private long nanos;
+    private long bytesIn = -1;
+    private long bytesOut = -1;
+    private double averageCodeLength = Double.NaN;
+    private double entropy = Double.NaN;
+    private int maxCodeLength = -1;
+
+    /**
+     * Starts counting a run
+     * @param operation What the run does, such as "encode"
+     * @param countAllocations Whether to count the bytes each phase allocates
+     *   even when JFR isn't recording
+     */
+    public Stats(String operation, boolean countAllocations) {
+        this.operation = operation;
+        this.countAllocations = countAllocations || this.isRecording;
+    }
+
+    /**
+     * @return Whether a flight recorder is running, without starting one;
+     *   false on JVMs without JFR
+     */
+    private static boolean isRecording() {
+        try {
+            return (Boolean) Class.forName("jdk.jfr.FlightRecorder")
+                    .getMethod("isInitialized").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /** @return The counters of the latest finished run in this JVM, or null if none */
+    public static Stats latest() {
+        return latest;
+    }
+
+    /** @return The # of bytes this thread has allocated, or 0 if the JVM can't tell */
+    private static long allocatedBytes() {
+        if (Threads.BEAN instanceof com.sun.management.ThreadMXBean) {
+            long allocated = ((com.sun.management.ThreadMXBean) Threads.BEAN)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+            return Math.max(allocated, 0);
+        }
+        return 0;
+    }
+
+    /**
+     * Starts a phase, to be closed when it's done
+     * @param name The name of the phase
+     * @return The phase
+     */
+    public Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    /** Sets the # of bytes read and written by the run */
+    public void bytes(long bytesIn, long bytesOut) {
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+    }
+
+    /**
+     * Notes the code a whole input was encoded with
+     * @param byteTable The # of occurrences of each byte
+     * @param lengths The keyword length of each byte
+     */
+    public void code(long[] byteTable, int[] lengths) {
+        long total = 0;
+        for (long count : byteTable) {
+            total += count;
+        }
+        double entropy = 0;
+        for (long count : byteTable) {
+            if (count == 0) { continue; }
+            double p = (double) count / total;
+            entropy -= p * Math.log(p) / Math.log(2);
+        }
+        this.entropy = entropy;
+        this.averageCodeLength = total == 0 ? 0
+                : (double) Huffman.encodedBits(byteTable, lengths) / total;
+        maxCodeLength(lengths);
+    }
+
+    /** Notes the longest keyword of a code, from its keyword lengths */
+    public void maxCodeLength(int[] lengths) {
+        int max = 0;
+        for (int length : lengths) {
+            max = Math.max(max, length);
+        }
+        this.maxCodeLength = max;
+    }
+
+    /** Ends the run, making it the latest one */
+    public void finish() {
+        this.nanos = System.nanoTime() - this.start;
+        if (this.event != null) {
+            StatsEvents.commitRun(this.event, this.operation, this.bytesIn, this.bytesOut,
+                    this.averageCodeLength, this.entropy, this.maxCodeLength);
+        }
+        latest = this;
+    }
+
+    /**
+     * @return Every counter of the run by name; "nanos", "bytesIn",
+     *   "bytesOut", "averageCodeLength", "entropy", "maxCodeLength", and
+     *   for each phase "phase.NAME.nanos", ".bytes" and ".allocated"
+     *   Counters that weren't measured are left out
+     */
+    public synchronized Map<String, Number> counters() {
+        Map<String, Number> counters = new LinkedHashMap<>();
+        counters.put("nanos", this.nanos);
+        if (this.bytesIn >= 0) { counters.put("bytesIn", this.bytesIn); }
+        if (this.bytesOut >= 0) { counters.put("bytesOut", this.bytesOut); }
+        if (!Double.isNaN(this.averageCodeLength)) {
+            counters.put("averageCodeLength", this.averageCodeLength);
+            counters.put("entropy", this.entropy);
+        }
+        if (this.maxCodeLength >= 0) { counters.put("maxCodeLength", this.maxCodeLength); }
+        for (Phase phase : this.phases) {
+            counters.put("phase." + phase.name + ".nanos", phase.nanos);
+            counters.put("phase." + phase.name + ".bytes", phase.bytes);
+            if (this.countAllocations) {
+                counters.put("phase." + phase.name + ".allocated", phase.allocated);
+            }
+        }
+        return counters;
+    }
+
+    /** Prints the counters of the run as a table, to stderr */
+    public synchronized void report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("\u001B[36m[Info] %s stats%n", this.operation));
+        report.append(String.format("  %-12s %10s %10s %12s%n", "phase", "ms", "MB/s", "allocated"));
+        for (Phase phase : this.phases) {
+            report.append(String.format("  %-12s %10.2f %10s %12s%n",
+                    phase.name, phase.nanos / 1e6,
+                    phase.bytes == 0 ? "-" : String.format("%.1f", phase.bytes * 1e3 / phase.nanos),
+                    this.countAllocations ? String.format("%.1f MB", phase.allocated / 1e6) : "-"));
+        }
+        report.append(String.format("  %-12s %10.2f%n", "total", this.nanos / 1e6));
+        if (this.bytesIn >= 0 && this.bytesOut >= 0) {
+            long raw = this.operation.equals("decode") ? this.bytesOut : this.bytesIn;
+            report.append(String.format("  %d bytes in, %d bytes out, %.1f MB/s%n",
+                    this.bytesIn, this.bytesOut, raw * 1e3 / this.nanos));
+        }
+        if (!Double.isNaN(this.averageCodeLength)) {
+            report.append(String.format("  average code length %.4f bits, entropy %.4f bits%n",
+                    this.averageCodeLength, this.entropy));
+        }
+        if (this.maxCodeLength >= 0) {
+            report.append(String.format("  max code length %d bits%n", this.maxCodeLength));
+        }
+        System.err.print(report);
+    }
+}
@@ -0,0 +1,99 @@
+package huffmanconverter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR events of Stats
+ * Everything touching jdk.jfr is kept here, and Stats only loads this
+ *   class once it has found a flight recorder running, so the converter
+ *   still runs on a Java 8 JVM without JFR
+ * Stats holds the events as plain Objects, so it doesn't need jdk.jfr to
+ *   compile either
+ * @author me
+ */
+final class StatsEvents {
+    private StatsEvents() {}
+
+    /** A phase of a run, as a JFR event */
+    @Name("huffmanconverter.Phase")
+    @Label("Huffman Phase")
+    @Category("Huffman Converter")
+    @Description("A phase of encoding or decoding a file")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    /** A whole run, as a JFR event */
+    @Name("huffmanconverter.Run")
+    @Label("Huffman Run")
+    @Category("Huffman Converter")
+    @Description("A whole run of encoding or decoding a file")
+    static class RunEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+        @Label("Average Code Length")
+        @Description("Bits per input byte of the encoded data")
+        double averageCodeLength;
+        @Label("Entropy")
+        @Description("Bits per input byte of an ideal code for the input's byte frequencies")
+        double entropy;
+        @Label("Max Code Length")
+        int maxCodeLength;
+    }
+
+    /** @return A started phase event */
+    static Object beginPhase() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /** Ends a phase event, committing it if the recording wants it */
+    static void commitPhase(Object phaseEvent, String phase, long bytes, long allocated) {
+        PhaseEvent event = (PhaseEvent) phaseEvent;
+        if (!event.shouldCommit()) { return; }
+        event.phase = phase;
+        event.bytes = bytes;
+        event.allocated = allocated;
+        event.commit();
+    }
+
+    /** @return A started run event */
+    static Object beginRun() {
+        RunEvent event = new RunEvent();
+        event.begin();
+        return event;
+    }
+
+    /** Ends a run event, committing it if the recording wants it */
+    static void commitRun(Object runEvent, String operation, long bytesIn, long bytesOut,
+            double averageCodeLength, double entropy, int maxCodeLength) {
+        RunEvent event = (RunEvent) runEvent;
+        if (!event.shouldCommit()) { return; }
+        event.operation = operation;
+        event.bytesIn = bytesIn;
+        event.bytesOut = bytesOut;
+        event.averageCodeLength = averageCodeLength;
+        event.entropy = entropy;
+        event.maxCodeLength = maxCodeLength;
+        event.commit();
+    }
+}
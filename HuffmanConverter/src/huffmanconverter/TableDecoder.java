@@ -0,0 +1,177 @@
+package huffmanconverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes Huffman encoded input using lookup tables instead of walking
+ * the Huffman tree one bit at a time
+ * The primary table is indexed by the next TABLE_BITS bits of input and
+ *   resolves every code of up to TABLE_BITS bits (and up to MAX_SYMBOLS
+ *   codes that fit in those bits) in a single lookup
+ * Longer codes continue into secondary tables linked from the primary one
+ * @author me
+ */
+public class TableDecoder {
+    /** The # of bits looked up at once in the primary table */
+    public static final int TABLE_BITS = 10;
+    /** The max # of symbols a single primary table entry can resolve */
+    private static final int MAX_SYMBOLS = 3;
+
+    // every table entry is an int laid out as follows:
+    //   bits 0-3:  # of bits the entry consumes, or for a link the # of
+    //              bits used to index the linked table
+    //   bits 4-5:  # of symbols the entry resolves, 0 for a link
+    //   bits 8-31: up to three symbols, first symbol lowest,
+    //              or for a link the offset of the linked table
+    private static final int BITS_MASK = 0xF;
+    private static final int COUNT_SHIFT = 4;
+    private static final int COUNT_MASK = 0x3 << COUNT_SHIFT;
+    private static final int PAYLOAD_SHIFT = 8;
+
+    private final Huffman.Node tree;
+    /** All tables after each other, with the primary table first */
+    private int[] table;
+    /** The # of used entries in table while building */
+    private int tableSize;
+
+    /**
+     * Builds the lookup tables for a Huffman tree
+     * @param tree The Huffman tree, as made by Huffman.generateTree
+     */
+    public TableDecoder(Huffman.Node tree) {
+        this.tree = tree;
+        // an empty input has no tree, and an input with a single distinct
+        //   byte has a tree with no bits per byte; neither needs tables
+        if (tree != null && !tree.isLeaf()) {
+            this.table = new int[1 << TABLE_BITS];
+            buildTable(tree, TABLE_BITS, true);
+            this.table = Arrays.copyOf(this.table, this.tableSize);
+        }
+    }
+
+    /**
+     * Fills in a table for the subtree under a node, and recursively the
+     *   tables linked from it
+     * @param root The node whose subtree the table decodes
+     * @param bits The # of bits used to index the table
+     * @param isPrimary Whether this is the primary table, which may resolve
+     *   several symbols per entry
+     * @return The offset of the new table
+     */
+    private int buildTable(Huffman.Node root, int bits, boolean isPrimary) {
+        int base = this.tableSize;
+        this.tableSize += 1 << bits;
+        if (this.tableSize > this.table.length) {
+            this.table = Arrays.copyOf(this.table,
+                    Math.max(this.tableSize, 2 * this.table.length));
+        }
+
+        for (int i = 0; i < 1 << bits; ++i) {
+            // walk the tree along the bits of i, noting each leaf we hit
+            Huffman.Node node = root;
+            int numSymbols = 0;
+            int symbols = 0;
+            int consumed = 0;
+            for (int b = bits - 1; b >= 0; --b) {
+                node = ((i >>> b) & 1) == 0 ? node.left : node.right;
+                if (node.isLeaf()) {
+                    symbols |= node.getByte() << (8 * numSymbols);
+                    ++numSymbols;
+                    consumed = bits - b;
+                    if (!isPrimary || numSymbols == MAX_SYMBOLS) { break; }
+                    // the remaining bits may hold the start of another code
+                    node = this.tree;
+                }
+            }
+
+            int entry;
+            if (numSymbols > 0) {
+                entry = consumed
+                        | numSymbols << COUNT_SHIFT
+                        | symbols << PAYLOAD_SHIFT;
+            } else {
+                // the code is longer than this table, so link to a table
+                //   for the subtree we ended up in
+                int subBits = Math.min(TABLE_BITS, depth(node));
+                int subTable = buildTable(node, subBits, false);
+                entry = subBits | subTable << PAYLOAD_SHIFT;
+            }
+            this.table[base + i] = entry;
+        }
+        return base;
+    }
+
+    /** @return The # of edges on the longest path from node to a leaf */
+    private static int depth(Huffman.Node node) {
+        if (node.isLeaf()) { return 0; }
+        return 1 + Math.max(depth(node.left), depth(node.right));
+    }
+
+    /**
+     * Decodes a number of bytes from an input and writes them to an output
+     * @param inp The input to decode, positioned at the first code
+     * @param outp The output to write the decoded bytes to
+     * @param numBytes The # of bytes to decode
+     */
+    public void decode(BitInputStream inp, OutputStream outp, long numBytes)
+            throws IOException {
+        byte[] buf = new byte[8192];
+        while (numBytes > 0) {
+            int n = (int) Math.min(numBytes, buf.length);
+            decode(inp, buf, 0, n);
+            outp.write(buf, 0, n);
+            numBytes -= n;
+        }
+    }
+
+    /**
+     * Decodes a number of bytes from an input into an array
+     * @param inp The input to decode, positioned at the first code
+     * @param dst The array to write the decoded bytes to
+     * @param off The index in dst of the first decoded byte
+     * @param len The # of bytes to decode
+     */
+    public void decode(BitInputStream inp, byte[] dst, int off, int len)
+            throws IOException {
+        if (len <= 0) { return; }
+        // with a single distinct byte every code is empty
+        if (this.tree.isLeaf()) {
+            Arrays.fill(dst, off, off + len, (byte) this.tree.getByte());
+            return;
+        }
+
+        int pos = off;
+        int end = off + len;
+        // an entry may hold up to MAX_SYMBOLS symbols,
+        //   so only use the table while all of them fit
+        while (pos <= end - MAX_SYMBOLS) {
+            int bits = TABLE_BITS;
+            int entry = this.table[inp.peekBits(bits)];
+            // follow links until we reach an entry that resolves symbols
+            while ((entry & COUNT_MASK) == 0) {
+                inp.skipBits(bits);
+                bits = entry & BITS_MASK;
+                entry = this.table[(entry >>> PAYLOAD_SHIFT) + inp.peekBits(bits)];
+            }
+            inp.skipBits(entry & BITS_MASK);
+
+            int numSymbols = (entry & COUNT_MASK) >>> COUNT_SHIFT;
+            int symbols = entry >>> PAYLOAD_SHIFT;
+            for (int k = 0; k < numSymbols; ++k) {
+                dst[pos++] = (byte) symbols;
+                symbols >>>= 8;
+            }
+        }
+        // then walk the tree for the last few bytes, so we don't consume
+        //   the bits of symbols we have no room for
+        while (pos < end) {
+            Huffman.Node node = this.tree;
+            while (!node.isLeaf()) {
+                node = inp.readBit() == 1 ? node.right : node.left;
+            }
+            dst[pos++] = (byte) node.getByte();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of PQ whose elements can be found again once inserted
+ * add works like insert, but returns a handle to the element, which can
+ *   lower its key or delete it from wherever in the heap it is by then
+ * This lets shortest-path and scheduling jobs update an element in place
+ *   instead of inserting a duplicate and skipping the stale one later,
+ *   so the heap only ever holds the live elements
+ * Each handle knows its index in the heap, kept up to date as elements
+ *   are sifted; keys are kept in an int[] of their own next to the handles
+ *   so comparing them doesn't follow a pointer
+ * For elements known by dense int IDs, IndexedIntPQHeap does the same
+ *   without a handle per element
+ * @author Johan Fagerberg
+ */
+public class AddressablePQHeap implements PQ {
+    /** The largest array the JVM reliably lets us allocate */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /** An element in the queue, or one that was */
+    public final class Handle {
+        private final Element elm;
+        /** The index of the element in the heap, or -1 once it's left */
+        private int index;
+
+        private Handle(Element elm, int index) {
+            this.elm = elm;
+            this.index = index;
+        }
+
+        /** @return The element, without removing it */
+        public Element peek() {
+            return this.elm;
+        }
+
+        /** @return Whether the element is still in the queue */
+        public boolean isQueued() {
+            return this.index >= 0;
+        }
+
+        /**
+         * Lowers the key of the element, moving it up the heap
+         * @param key The new key, no larger than the current one
+         * @throws IllegalArgumentException If the key is larger
+         * @throws IllegalStateException If the element has left the queue
+         */
+        public void decreaseKey(int key) {
+            checkQueued();
+            if (key > this.elm.key) {
+                throw new IllegalArgumentException("Can't decrease key " + this.elm.key
+                        + " to " + key);
+            }
+            this.elm.key = key;
+            siftUp(this.index, key, this);
+        }
+
+        /**
+         * Removes the element from the queue
+         * @throws IllegalStateException If the element has already left it
+         */
+        public void delete() {
+            checkQueued();
+            remove(this.index);
+        }
+
+        private void checkQueued() {
+            if (this.index < 0) {
+                throw new IllegalStateException("Element is no longer in the queue");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.elm.toString();
+        }
+    }
+
+    private int[] keys;
+    private Handle[] handles;
+    private int numElms = 0;
+
+    public AddressablePQHeap() {
+        this(16);
+    }
+
+    /** @param maxElms The # of elements to make room for up front */
+    public AddressablePQHeap(int maxElms) {
+        this.keys = new int[Math.max(maxElms, 1)];
+        this.handles = new Handle[this.keys.length];
+    }
+
+    /** @return The # of elements in the queue */
+    public int size() {
+        return this.numElms;
+    }
+
+    /**
+     * Makes room for one more element, doubling our capacity so growing
+     *   stays amortized O(1) per element
+     */
+    private void ensureRoom() {
+        if (this.numElms < this.keys.length) { return; }
+        if (this.numElms == MAX_CAPACITY) {
+            throw new IllegalStateException("Priority queue is full");
+        }
+        int capacity = (int) Math.min(2L * this.keys.length, MAX_CAPACITY);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.handles = Arrays.copyOf(this.handles, capacity);
+    }
+
+    /** Puts a handle at an index of the heap */
+    private void place(int i, int key, Handle handle) {
+        this.keys[i] = key;
+        this.handles[i] = handle;
+        handle.index = i;
+    }
+
+    /**
+     * Floats a handle up from a node until its parent's key is no larger
+     * @param i The index of the node, whose slot is free
+     * @param key The key of the handle's element
+     * @param handle The handle to place
+     * @return The index the handle ended up at
+     */
+    private int siftUp(int i, int key, Handle handle) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.keys[parent] <= key) { break; }
+            place(i, this.keys[parent], this.handles[parent]);
+            i = parent;
+        }
+        place(i, key, handle);
+        return i;
+    }
+
+    /**
+     * Sinks a handle from a node until its key is no larger than its
+     *   children's, moving the smaller child up at each level on the way
+     * @param i The index of the node, whose slot is free
+     * @param key The key of the handle's element
+     * @param handle The handle to place
+     */
+    private void siftDown(int i, int key, Handle handle) {
+        int n = this.numElms;
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2*i + 1;
+            int childKey = this.keys[child];
+            int right = child + 1;
+            if (right < n && this.keys[right] < childKey) {
+                child = right;
+                childKey = this.keys[right];
+            }
+            if (key <= childKey) { break; }
+            place(i, childKey, this.handles[child]);
+            i = child;
+        }
+        place(i, key, handle);
+    }
+
+    /**
+     * Removes the element at an index, filling its slot with the last one
+     * @param i The index of the element to remove
+     * @return The handle of the removed element
+     */
+    private Handle remove(int i) {
+        Handle removed = this.handles[i];
+        removed.index = -1;
+        int last = --this.numElms;
+        Handle lastHandle = this.handles[last];
+        int lastKey = this.keys[last];
+        this.handles[last] = null;
+        if (i < last) {
+            // the last element may belong above or below the hole
+            if (siftUp(i, lastKey, lastHandle) == i) {
+                siftDown(i, lastKey, lastHandle);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Inserts an element into our heap
+     * @param elm The element to insert
+     * @return A handle to the element, for as long as it is in the queue
+     */
+    public Handle add(Element elm) {
+        ensureRoom();
+        Handle handle = new Handle(elm, this.numElms);
+        siftUp(this.numElms++, elm.key, handle);
+        return handle;
+    }
+
+    /**
+     * Inserts an element into our heap
+     * @param elm The element to insert
+     */
+    @Override
+    public void insert(Element elm) {
+        add(elm);
+    }
+
+    /** @return A handle to the element with the smallest key, without removing it */
+    public Handle peek() {
+        if (this.numElms == 0) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        return this.handles[0];
+    }
+
+    /**
+     * Gets the element with the smallest key
+     * Also removes said element from the queue
+     * @return The element in the queue with the smallest key
+     */
+    @Override
+    public Element extractMin() {
+        if (this.numElms == 0) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        return remove(0).elm;
+    }
+
+    /** @return A simple tree-like representation of the heap */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, layerEnd = 1; i < this.numElms; layerEnd = 2*layerEnd + 1) {
+            for (; i < layerEnd && i < this.numElms; ++i) {
+                sb.append(this.handles[i]).append(" ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of PQ for monotone keys within a small span, using a
+ *   circular array of buckets, one per key (Dial's algorithm)
+ * Monotone means no key inserted is smaller than the last key extracted;
+ *   within a small span means no key inserted is more than span larger
+ *   than it, as with Dijkstra's algorithm on edge weights up to span, or
+ *   a simulation scheduling events at most span ticks ahead
+ * Every live key then falls in [last, last + span], so the bucket of a
+ *   key is just its value mod span + 1, and each bucket only ever holds
+ *   elements of one key at a time
+ * Inserting is O(1), and extracting scans forward from the last key to
+ *   the next non-empty bucket, O(1) amortized as long as keys are dense
+ *   and O(span) at worst
+ * For monotone keys over a larger span, see RadixHeap
+ * Keys are read when an element is inserted, so changing the key of an
+ *   element in the queue doesn't move it
+ * @author Johan Fagerberg
+ */
+public class BucketQueue implements PQ {
+    /** The largest array the JVM reliably lets us allocate */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /** The elements of each bucket, made once first used */
+    private final Element[][] buckets;
+    private final int[] sizes;
+    private final int span;
+    /** The last extracted key, or the smallest key allowed before any */
+    private int last;
+    private int numElms = 0;
+
+    /**
+     * @param minKey The smallest key allowed before any is extracted
+     * @param span The most a key may be larger than the last extracted one
+     */
+    public BucketQueue(int minKey, int span) {
+        if (span < 0 || span >= MAX_CAPACITY) {
+            throw new IllegalArgumentException("Span must be from 0 to "
+                    + (MAX_CAPACITY - 1) + ", got " + span);
+        }
+        this.span = span;
+        this.buckets = new Element[span + 1][];
+        this.sizes = new int[span + 1];
+        this.last = minKey;
+    }
+
+    /** @return The # of elements in the queue */
+    public int size() {
+        return this.numElms;
+    }
+
+    /** @return The bucket of a key, which is within span of the last one */
+    private int bucketOf(int key) {
+        return (int) Math.floorMod((long) key, (long) this.buckets.length);
+    }
+
+    /**
+     * Inserts an element into our queue
+     * @param elm The element to insert
+     * @throws IllegalArgumentException If its key is smaller than the last
+     *   key extracted, or larger by more than span
+     */
+    @Override
+    public void insert(Element elm) {
+        long ahead = (long) elm.key - this.last;
+        if (ahead < 0) {
+            throw new IllegalArgumentException("Key " + elm.key
+                    + " is smaller than the last extracted key " + this.last
+                    + "; a bucket queue needs monotone keys");
+        }
+        if (ahead > this.span) {
+            throw new IllegalArgumentException("Key " + elm.key + " is more than "
+                    + this.span + " larger than the last extracted key " + this.last);
+        }
+        int b = bucketOf(elm.key);
+        Element[] bucket = this.buckets[b];
+        int size = this.sizes[b];
+        if (bucket == null) {
+            bucket = this.buckets[b] = new Element[4];
+        } else if (size == bucket.length) {
+            bucket = this.buckets[b] = Arrays.copyOf(bucket, 2 * size);
+        }
+        bucket[size] = elm;
+        this.sizes[b] = size + 1;
+        ++this.numElms;
+    }
+
+    /**
+     * Gets the element with the smallest key
+     * Also removes said element from the queue
+     * @return The element in the queue with the smallest key
+     */
+    @Override
+    public Element extractMin() {
+        if (this.numElms == 0) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        int b = bucketOf(this.last);
+        while (this.sizes[b] == 0) {
+            b = b + 1 == this.sizes.length ? 0 : b + 1;
+            ++this.last;
+        }
+        int i = --this.sizes[b];
+        Element min = this.buckets[b][i];
+        this.buckets[b][i] = null;
+        --this.numElms;
+        return min;
+    }
+
+    /** @return The elements of each non-empty bucket, from the last key on */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0, b = bucketOf(this.last); k < this.sizes.length; ++k) {
+            if (this.sizes[b] > 0) {
+                sb.append((long) this.last + k).append(": ");
+                for (int i = 0; i < this.sizes[b]; ++i) {
+                    sb.append(this.buckets[b][i]).append(" ");
+                }
+                sb.append("\n");
+            }
+            b = b + 1 == this.sizes.length ? 0 : b + 1;
+        }
+        return sb.toString();
+    }
+}
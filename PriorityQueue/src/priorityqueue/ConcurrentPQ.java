@@ -0,0 +1,175 @@
+package priorityqueue;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An implementation of PQ any number of threads can use at once
+ * In STRICT mode the elements are kept in a lock-free skip list, so
+ *   extractMin always returns the smallest element in the queue, at the
+ *   cost of every thread contending for the front of the same list
+ * In RELAXED mode the elements are spread over several heaps, each behind
+ *   a lock of its own (a MultiQueue); an insert goes to a random heap
+ *   whose lock is free, and an extract takes the smaller top of two random
+ *   heaps, so threads rarely wait on each other
+ *   extractMin then returns one of the smallest elements rather than the
+ *   smallest, typically within the first few times the # of heaps
+ * Either way every element inserted is extracted exactly once
+ * Keys are read when an element is inserted, so changing the key of an
+ *   element in the queue doesn't move it
+ * @author Johan Fagerberg
+ */
+public class ConcurrentPQ implements PQ {
+    /** How strictly extractMin keeps to the order of the keys */
+    public enum Mode { STRICT, RELAXED }
+
+    /** An element in the skip list, ordered by key then by when it came */
+    private static final class Entry implements Comparable<Entry> {
+        final int key;
+        final long seq;
+        final Element elm;
+
+        Entry(Element elm, long seq) {
+            this.key = elm.key;
+            this.seq = seq;
+            this.elm = elm;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (this.key != other.key) { return Integer.compare(this.key, other.key); }
+            return Long.compare(this.seq, other.seq);
+        }
+    }
+
+    /** One heap of a MultiQueue, locked while in use */
+    private static final class Queue extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+        /** What min is while the heap is empty, above any int key */
+        static final long EMPTY = Long.MAX_VALUE;
+
+        final DaryHeap heap = new DaryHeap(4);
+        /** The smallest key in the heap, readable without the lock */
+        volatile long min = EMPTY;
+    }
+
+    private final Mode mode;
+    // STRICT mode
+    private final ConcurrentSkipListSet<Entry> list;
+    private final AtomicLong seq;
+    // RELAXED mode
+    private final Queue[] queues;
+    /** The # of elements in the heaps, counting ones being inserted but not extracted */
+    private final AtomicInteger size;
+
+    /**
+     * Makes a queue for as many threads as there are processors
+     * @param mode How strictly to keep to the order of the keys
+     */
+    public ConcurrentPQ(Mode mode) {
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param mode How strictly to keep to the order of the keys
+     * @param numThreads The # of threads expected to use the queue at once;
+     *   RELAXED mode keeps 2 heaps per thread, so there's usually a free one
+     */
+    public ConcurrentPQ(Mode mode, int numThreads) {
+        this.mode = mode;
+        if (mode == Mode.STRICT) {
+            this.list = new ConcurrentSkipListSet<>();
+            this.seq = new AtomicLong();
+            this.queues = null;
+            this.size = null;
+        } else {
+            this.list = null;
+            this.seq = null;
+            this.queues = new Queue[2 * Math.max(numThreads, 1)];
+            for (int i = 0; i < this.queues.length; ++i) {
+                this.queues[i] = new Queue();
+            }
+            this.size = new AtomicInteger();
+        }
+    }
+
+    /** @return How strictly the queue keeps to the order of the keys */
+    public Mode mode() {
+        return this.mode;
+    }
+
+    /**
+     * @return The # of elements in the queue; only exact while no other
+     *   thread is using it
+     */
+    public int size() {
+        return this.mode == Mode.STRICT ? this.list.size() : Math.max(this.size.get(), 0);
+    }
+
+    /**
+     * Inserts an element into the queue
+     * @param elm The element to insert
+     */
+    @Override
+    public void insert(Element elm) {
+        if (this.mode == Mode.STRICT) {
+            this.list.add(new Entry(elm, this.seq.getAndIncrement()));
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            Queue queue = this.queues[random.nextInt(this.queues.length)];
+            if (!queue.tryLock()) { continue; }
+            try {
+                queue.heap.insert(elm);
+                if (elm.key < queue.min) { queue.min = elm.key; }
+            } finally {
+                queue.unlock();
+            }
+            // only counted once it can be found, so a counted element is
+            //   always in some heap for an extract to take
+            this.size.incrementAndGet();
+            return;
+        }
+    }
+
+    /**
+     * Gets an element with the smallest key, or in RELAXED mode one with
+     *   one of the smallest keys
+     * Also removes said element from the queue
+     * @return The element
+     */
+    @Override
+    public Element extractMin() {
+        if (this.mode == Mode.STRICT) {
+            Entry entry = this.list.pollFirst();
+            if (entry == null) {
+                throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+            }
+            return entry.elm;
+        }
+        // claim an element first, so we know there is one left for us
+        if (this.size.getAndDecrement() <= 0) {
+            this.size.incrementAndGet();
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            Queue a = this.queues[random.nextInt(this.queues.length)];
+            Queue b = this.queues[random.nextInt(this.queues.length)];
+            Queue queue = b.min < a.min ? b : a;
+            if (queue.min == Queue.EMPTY || !queue.tryLock()) { continue; }
+            try {
+                if (queue.heap.size() == 0) { continue; }
+                Element min = queue.heap.extractMin();
+                queue.min = queue.heap.size() == 0 ? Queue.EMPTY : queue.heap.peek().key;
+                return min;
+            } finally {
+                queue.unlock();
+            }
+        }
+    }
+}
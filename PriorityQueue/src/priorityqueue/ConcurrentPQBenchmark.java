@@ -0,0 +1,121 @@
+package priorityqueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares the throughput of ConcurrentPQ in both modes with a PQHeap
+ *   behind a single lock, at 1 to 64 threads
+ * The queue starts out holding a number of random keys, and every thread
+ *   then alternates inserting a random key and extracting the min for a
+ *   while; the total # of operations per second is printed
+ * Usage: ConcurrentPQBenchmark [--threads 1,2,4,...,64] [--prefill 1000000]
+ *   [--millis 1000]
+ * @author Johan Fagerberg
+ */
+public class ConcurrentPQBenchmark {
+    /** A PQHeap behind one lock, as we had before */
+    private static class SynchronizedPQ implements PQ {
+        private final PQHeap heap = new PQHeap(16);
+
+        @Override
+        public synchronized Element extractMin() {
+            return this.heap.extractMin();
+        }
+
+        @Override
+        public synchronized void insert(Element e) {
+            this.heap.insert(e);
+        }
+    }
+
+    /** Something each thread feeds its result into, so it can't be optimized away */
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = {1, 2, 4, 8, 16, 32, 64};
+        int prefill = 1000000;
+        long millis = 1000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads":
+                    String[] values = args[i + 1].split(",");
+                    threads = new int[values.length];
+                    for (int t = 0; t < values.length; ++t) {
+                        threads[t] = Integer.parseInt(values[t]);
+                    }
+                    break;
+                case "--prefill": prefill = (int) Double.parseDouble(args[i + 1]); break;
+                case "--millis": millis = Long.parseLong(args[i + 1]); break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        System.out.printf("%8s %14s %14s %14s%n", "threads", "locked Mops/s",
+                "strict Mops/s", "relaxed Mops/s");
+        // the first row runs twice, the first time only to warm up the JIT
+        for (int i = -1; i < threads.length; ++i) {
+            int numThreads = threads[Math.max(i, 0)];
+            double locked = run(new SynchronizedPQ(), numThreads, prefill, millis);
+            double strict = run(new ConcurrentPQ(ConcurrentPQ.Mode.STRICT, numThreads),
+                    numThreads, prefill, millis);
+            double relaxed = run(new ConcurrentPQ(ConcurrentPQ.Mode.RELAXED, numThreads),
+                    numThreads, prefill, millis);
+            if (i >= 0) {
+                System.out.printf("%8d %14.2f %14.2f %14.2f%n", numThreads, locked, strict, relaxed);
+            }
+        }
+    }
+
+    /**
+     * Runs the benchmark on a queue
+     * @return Millions of operations per second, over all threads
+     */
+    private static double run(PQ pq, int numThreads, int prefill, long millis) throws Exception {
+        Random random = new Random(prefill);
+        for (int i = 0; i < prefill; ++i) {
+            pq.insert(new Element(random.nextInt(), null));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+            // one flag for all, so no thread runs longer for starting late
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < numThreads; ++t) {
+                results.add(executor.submit(() -> {
+                    ThreadLocalRandom threadRandom = ThreadLocalRandom.current();
+                    long ops = 0;
+                    long sum = 0;
+                    barrier.await();
+                    while (!stop.get()) {
+                        pq.insert(new Element(threadRandom.nextInt(), null));
+                        sum += pq.extractMin().key;
+                        ops += 2;
+                    }
+                    sink += sum;
+                    return ops;
+                }));
+            }
+            barrier.await();
+            long start = System.nanoTime();
+            Thread.sleep(millis);
+            stop.set(true);
+            long ops = 0;
+            for (Future<Long> result : results) {
+                ops += result.get();
+            }
+            return ops * 1e3 / (System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package priorityqueue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Stress test of ConcurrentPQ, in both modes, with many threads at once
+ * Each round has every thread insert its own range of keys while also
+ *   extracting, then every thread extract what's left at once
+ * Fails if any key is lost or extracted twice, or if in STRICT mode a
+ *   thread extracts a smaller key after a larger one once only extracts
+ *   are running
+ * Usage: ConcurrentPQStress [threads] [keys per thread] [rounds]
+ * @author Johan Fagerberg
+ */
+public class ConcurrentPQStress {
+    public static void main(String[] args) throws Exception {
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (ConcurrentPQ.Mode mode : ConcurrentPQ.Mode.values()) {
+                for (int round = 0; round < rounds; ++round) {
+                    long start = System.nanoTime();
+                    run(executor, new ConcurrentPQ(mode, numThreads), numThreads, perThread);
+                    System.out.printf("%s round %d ok, %.0f ms%n",
+                            mode, round, (System.nanoTime() - start) / 1e6);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Runs one round over a queue, throwing if it went wrong */
+    private static void run(ExecutorService executor, ConcurrentPQ pq,
+            int numThreads, int perThread) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(numThreads);
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        for (int t = 0; t < numThreads; ++t) {
+            int first = t * perThread;
+            results.add(executor.submit(() -> {
+                List<Integer> extracted = new ArrayList<>();
+                barrier.await();
+                // inserts and extracts mixed, keys in a scattered order
+                for (int i = 0; i < perThread; ++i) {
+                    int key = first + (int) ((i * 0x9E3779B1L) % perThread);
+                    pq.insert(new Element(key, key));
+                    if (i % 3 == 0) { extracted.add(pq.extractMin().key); }
+                }
+                barrier.await();
+                // only extracts, until the queue is empty
+                int lastSeen = Integer.MIN_VALUE;
+                while (true) {
+                    Element elm;
+                    try {
+                        elm = pq.extractMin();
+                    } catch (ArrayIndexOutOfBoundsException e) {
+                        break;
+                    }
+                    if (!elm.data.equals(elm.key)) {
+                        throw new IllegalStateException("Element " + elm + " lost its data");
+                    }
+                    if (pq.mode() == ConcurrentPQ.Mode.STRICT && elm.key < lastSeen) {
+                        throw new IllegalStateException("Extracted " + elm.key + " after " + lastSeen);
+                    }
+                    lastSeen = elm.key;
+                    extracted.add(elm.key);
+                }
+                return extracted;
+            }));
+        }
+        BitSet seen = new BitSet(numThreads * perThread);
+        int total = 0;
+        for (Future<List<Integer>> result : results) {
+            for (int key : result.get()) {
+                if (seen.get(key)) {
+                    throw new IllegalStateException("Extracted " + key + " twice");
+                }
+                seen.set(key);
+                ++total;
+            }
+        }
+        if (total != numThreads * perThread || pq.size() != 0) {
+            throw new IllegalStateException("Lost " + (numThreads * perThread - total) + " keys");
+        }
+    }
+}
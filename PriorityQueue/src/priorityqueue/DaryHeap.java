@@ -0,0 +1,227 @@
+package priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of PQ using a d-ary heap, for d a power of 2
+ * A wider heap is shallower, so an extract visits log_d(n) levels instead
+ *   of log_2(n); once the heap outgrows the cache every level is a miss,
+ *   so fewer levels beat the extra comparisons within each
+ * Keys are kept in an int[] of their own next to the elements, so
+ *   comparing the children of a node reads one run of ints instead of
+ *   following a pointer to each child's Element
+ * The root sits at index d-1, leaving the slots before it unused, so the
+ *   children of every node start at a multiple of d; with 4-byte keys the
+ *   8 children of an 8-ary node take up one aligned half of a 64 byte cache
+ *   line, and the 16 of a 16-ary node a whole one, relative to the start
+ *   of the array (the JVM only aligns the array itself to 8 bytes)
+ * Sifting is iterative and moves the elements in the way along, writing
+ *   the sifted element once at the end, instead of swapping at every level
+ * Keys are read when an element is inserted, so changing the key of an
+ *   element in the queue doesn't move it
+ * @author Johan Fagerberg
+ */
+public class DaryHeap implements PQ {
+    /** The largest array the JVM reliably lets us allocate */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /** log2 of the # of children of each node */
+    private final int shift;
+    /** The index of the root; the # of unused slots in front of it */
+    private final int root;
+    private int[] keys;
+    private Element[] elms;
+    /** The index just past the last element */
+    private int end;
+
+    /** @param arity The # of children of each node; 2, 4, 8 or 16 */
+    public DaryHeap(int arity) {
+        this(arity, 16);
+    }
+
+    /**
+     * @param arity The # of children of each node; 2, 4, 8 or 16
+     * @param maxElms The # of elements to make room for up front
+     */
+    public DaryHeap(int arity, int maxElms) {
+        if (arity < 2 || arity > 16 || Integer.bitCount(arity) != 1) {
+            throw new IllegalArgumentException("Arity must be 2, 4, 8 or 16, got " + arity);
+        }
+        this.shift = Integer.numberOfTrailingZeros(arity);
+        this.root = arity - 1;
+        this.keys = new int[this.root + Math.max(maxElms, 1)];
+        this.elms = new Element[this.keys.length];
+        this.end = this.root;
+    }
+
+    /** @return The # of children of each node */
+    public int arity() {
+        return 1 << this.shift;
+    }
+
+    /** @return The # of elements in the queue */
+    public int size() {
+        return this.end - this.root;
+    }
+
+    /** @return The index of the first child of the node at an index */
+    private int firstChild(int i) {
+        return (i - this.root + 1) << this.shift;
+    }
+
+    /** @return The index of the parent of the node at an index */
+    private int parent(int i) {
+        return (i >>> this.shift) + this.root - 1;
+    }
+
+    /**
+     * Makes room for at least some more elements, doubling our capacity
+     *   if that's enough so growing stays amortized O(1) per element
+     * @param extra The # of elements to make room for
+     */
+    private void ensureRoom(int extra) {
+        if (this.keys.length - this.end >= extra) { return; }
+        if (MAX_CAPACITY - this.end < extra) {
+            throw new IllegalStateException("Priority queue is full");
+        }
+        int capacity = this.keys.length <= MAX_CAPACITY / 2
+                ? 2 * this.keys.length
+                : MAX_CAPACITY;
+        capacity = Math.max(capacity, this.end + extra);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.elms = Arrays.copyOf(this.elms, capacity);
+    }
+
+    /**
+     * Sinks an element from a node until its key is no larger than any of
+     *   its children's, moving the smallest child up at each level
+     * @param i The index of the node, whose slot is free
+     * @param key The key of the element
+     * @param elm The element to place
+     */
+    private void siftDown(int i, int key, Element elm) {
+        int[] keys = this.keys;
+        Element[] elms = this.elms;
+        int end = this.end;
+        int arity = 1 << this.shift;
+        // nodes past the parent of the last one have no children; comparing
+        //   indices first also keeps firstChild from overflowing
+        int lastParent = parent(end - 1);
+        while (i <= lastParent) {
+            int child = firstChild(i);
+            // find the smallest of the children, all in one run of keys
+            int last = Math.min(child + arity, end);
+            int minChild = child;
+            int minKey = keys[child];
+            for (int c = child + 1; c < last; ++c) {
+                int k = keys[c];
+                if (k < minKey) {
+                    minKey = k;
+                    minChild = c;
+                }
+            }
+            if (key <= minKey) { break; }
+            keys[i] = minKey;
+            elms[i] = elms[minChild];
+            i = minChild;
+        }
+        keys[i] = key;
+        elms[i] = elm;
+    }
+
+    /**
+     * Inserts many elements at once
+     * Adding at least as many elements as are already in the heap is done
+     *   by sifting down bottom-up, in O(n) for the whole heap, rather than
+     *   by one O(log n) insert per element
+     * @param elms The array holding the elements
+     * @param off The index of the first element to insert
+     * @param len The # of elements to insert
+     */
+    public void insertAll(Element[] elms, int off, int len) {
+        if (len < size()) {
+            for (int i = off; i < off + len; ++i) {
+                insert(elms[i]);
+            }
+            return;
+        }
+        ensureRoom(len);
+        for (int i = 0; i < len; ++i) {
+            Element elm = elms[off + i];
+            this.keys[this.end + i] = elm.key;
+            this.elms[this.end + i] = elm;
+        }
+        this.end += len;
+        // every node from the last parent up to the root, so all subtrees
+        //   of a node are in heap order by the time we reach it
+        for (int i = parent(this.end - 1); i >= this.root; --i) {
+            siftDown(i, this.keys[i], this.elms[i]);
+        }
+    }
+
+    /** @return The element with the smallest key, without removing it */
+    public Element peek() {
+        if (this.end == this.root) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        return this.elms[this.root];
+    }
+
+    /**
+     * Gets the element with the smallest key
+     * Also removes said element from the queue
+     * @return The element in the queue with the smallest key
+     */
+    @Override
+    public Element extractMin() {
+        if (this.end == this.root) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        Element min = this.elms[this.root];
+        int last = --this.end;
+        Element lastElm = this.elms[last];
+        this.elms[last] = null;
+        // the last element fills the hole at the top, and sinks from there
+        if (last > this.root) {
+            siftDown(this.root, this.keys[last], lastElm);
+        }
+        return min;
+    }
+
+    /**
+     * Inserts an element into our heap
+     * @param elm The element to insert
+     */
+    @Override
+    public void insert(Element elm) {
+        ensureRoom(1);
+        int[] keys = this.keys;
+        Element[] elms = this.elms;
+        int key = elm.key;
+        int i = this.end++;
+        // move parents larger than our key down, until we find its place
+        while (i > this.root) {
+            int parent = parent(i);
+            int parentKey = keys[parent];
+            if (parentKey <= key) { break; }
+            keys[i] = parentKey;
+            elms[i] = elms[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        elms[i] = elm;
+    }
+
+    /** @return A simple tree-like representation of the heap */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = this.root, layer = 1; i < this.end; layer <<= this.shift) {
+            for (int layerEnd = i + layer; i < layerEnd && i < this.end; ++i) {
+                sb.append(this.elms[i]).append(" ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,345 @@
+package priorityqueue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Sorts more ints than fit in memory, using only a fixed # of them there
+ *   and reading and writing files sequentially only
+ * First the input is split into sorted runs by replacement selection: a
+ *   heap holds as many ints as memory allows, and the min is written to
+ *   the current run and replaced by the next int of the input; an int
+ *   smaller than the last one written has to wait for the next run
+ *   On random input this makes runs of about twice the heap on average,
+ *   and on sorted input a single run
+ * Then the runs are merged, up to fanIn at a time, by a heap holding the
+ *   next int of each run; merging more runs than that takes a few passes,
+ *   each writing fewer, longer runs
+ * Runs are raw big-endian ints in temporary files, deleted once merged
+ * @author Johan Fagerberg
+ */
+public class ExternalSort {
+    /** The smallest read buffer a run gets when merging */
+    private static final int MIN_BUFFER = 1 << 12;
+
+    /** Where merged ints go; a run being written, or the caller */
+    private interface IntSink {
+        void accept(int i) throws IOException;
+    }
+
+    /** A sorted run of ints spilled to a file */
+    private static class Run {
+        final File file;
+        final long length;
+
+        Run(File file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+    /** Reads the ints of a run in order */
+    private static class RunReader implements AutoCloseable {
+        private final DataInputStream inp;
+        private long remaining;
+
+        RunReader(Run run, int bufferSize) throws IOException {
+            this.inp = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(run.file), bufferSize));
+            this.remaining = run.length;
+        }
+
+        boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        int next() throws IOException {
+            --this.remaining;
+            return this.inp.readInt();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.inp.close();
+        }
+    }
+
+    /** Writes the ints of a run, counting them */
+    private class RunWriter implements AutoCloseable {
+        private final File file;
+        private final DataOutputStream outp;
+        private long length = 0;
+
+        RunWriter() throws IOException {
+            this.file = File.createTempFile("run", ".bin", tmpDir());
+            this.outp = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(this.file), 1 << 16));
+        }
+
+        void write(int i) throws IOException {
+            this.outp.writeInt(i);
+            ++this.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.outp.close();
+        }
+
+        Run toRun() {
+            return new Run(this.file, this.length);
+        }
+    }
+
+    private final int memoryElms;
+    private final int fanIn;
+    private final File parentDir;
+    /** Where this sort keeps its runs, made when the first run is written */
+    private File tmpDir;
+    private int numRuns = 0;
+    private int numMergePasses = 0;
+
+    /**
+     * @param memoryElms The # of ints the heap may hold; each takes 8 bytes
+     * @param fanIn The most runs to merge at once, >= 2
+     * @param parentDir Where to make the directory for runs, or null for
+     *   the system's temporary directory
+     */
+    public ExternalSort(int memoryElms, int fanIn, File parentDir) {
+        if (memoryElms < 1) {
+            throw new IllegalArgumentException("Memory must hold at least 1 int, got " + memoryElms);
+        }
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2, got " + fanIn);
+        }
+        this.memoryElms = memoryElms;
+        this.fanIn = fanIn;
+        this.parentDir = parentDir;
+    }
+
+    /** @return The # of runs the last sort split its input into */
+    public int numRuns() {
+        return this.numRuns;
+    }
+
+    /** @return The # of merge passes the last sort made before the final merge */
+    public int numMergePasses() {
+        return this.numMergePasses;
+    }
+
+    private File tmpDir() throws IOException {
+        if (this.tmpDir == null) {
+            this.tmpDir = this.parentDir == null
+                    ? Files.createTempDirectory("heapsort").toFile()
+                    : Files.createTempDirectory(this.parentDir.toPath(), "heapsort").toFile();
+        }
+        return this.tmpDir;
+    }
+
+    /**
+     * Sorts ints
+     * @param inp The ints to sort
+     * @param outp Where to send the ints in order
+     * @return The # of ints sorted
+     */
+    public long sort(PrimitiveIterator.OfInt inp, IntConsumer outp) throws IOException {
+        this.numRuns = 0;
+        this.numMergePasses = 0;
+        Deque<Run> runs = new ArrayDeque<>();
+        try {
+            long n = makeRuns(inp, runs, outp);
+            if (!runs.isEmpty()) {
+                while (runs.size() > this.fanIn) {
+                    mergePass(runs);
+                    ++this.numMergePasses;
+                }
+                merge(new ArrayList<>(runs), outp::accept);
+                runs.clear();
+            }
+            return n;
+        } finally {
+            for (Run run : runs) {
+                run.file.delete();
+            }
+            if (this.tmpDir != null) {
+                this.tmpDir.delete();
+                this.tmpDir = null;
+            }
+        }
+    }
+
+    /**
+     * Splits the input into sorted runs by replacement selection
+     * If it all fits in the heap, it is sent straight to outp instead
+     * @param inp The ints to sort
+     * @param runs Where to add the runs
+     * @param outp Where to send the ints if there's only one run
+     * @return The # of ints read
+     */
+    private long makeRuns(PrimitiveIterator.OfInt inp, Deque<Run> runs, IntConsumer outp)
+            throws IOException {
+        // each int is packed with the # of its run above it, so the heap
+        //   orders by run first, see pack
+        // the heap gets all its memory up front, and is filled one insert
+        //   at a time rather than bottom-up, which would need a second
+        //   array; on random input an insert only moves up a level or two
+        LongPQHeap heap = new LongPQHeap(this.memoryElms);
+        while (heap.size() < this.memoryElms && inp.hasNext()) {
+            heap.insert(pack(0, inp.nextInt()));
+        }
+        long n = heap.size();
+        if (!inp.hasNext()) {
+            // it all fits in memory, so there's nothing to spill
+            while (heap.size() > 0) {
+                outp.accept(unpackInt(heap.extractMin()));
+            }
+            this.numRuns = n == 0 ? 0 : 1;
+            return n;
+        }
+
+        RunWriter writer = null;
+        int run = -1;
+        try {
+            while (heap.size() > 0) {
+                long min = heap.extractMin();
+                int minRun = (int) (min >>> 32);
+                if (minRun != run) {
+                    if (writer != null) {
+                        writer.close();
+                        runs.addLast(writer.toRun());
+                        writer = null;
+                    }
+                    writer = new RunWriter();
+                    run = minRun;
+                }
+                int key = unpackInt(min);
+                writer.write(key);
+                if (inp.hasNext()) {
+                    int next = inp.nextInt();
+                    ++n;
+                    // smaller than what we just wrote, so it can't join this run
+                    heap.insert(pack(next < key ? run + 1 : run, next));
+                }
+            }
+            writer.close();
+            runs.addLast(writer.toRun());
+            writer = null;
+        } finally {
+            if (writer != null) { discard(writer); }
+        }
+        this.numRuns = runs.size();
+        return n;
+    }
+
+    /**
+     * Merges every run in groups of fanIn, leaving fewer, longer runs
+     * Every run stays in runs until it's merged, and merged ones are put
+     *   back even if a merge fails, so sort can delete them all
+     * @param runs The runs, replaced by the merged ones
+     */
+    private void mergePass(Deque<Run> runs) throws IOException {
+        Deque<Run> merged = new ArrayDeque<>();
+        try {
+            while (!runs.isEmpty()) {
+                if (runs.size() == 1) {
+                    // nothing to merge it with, so it goes on to the next pass
+                    merged.addLast(runs.removeFirst());
+                    break;
+                }
+                List<Run> group = new ArrayList<>();
+                for (Run run : runs) {
+                    if (group.size() == this.fanIn) { break; }
+                    group.add(run);
+                }
+                RunWriter writer = new RunWriter();
+                try {
+                    merge(group, writer::write);
+                    writer.close();
+                    merged.addLast(writer.toRun());
+                    writer = null;
+                } finally {
+                    if (writer != null) { discard(writer); }
+                }
+                // merge deleted the group's files
+                for (int i = 0; i < group.size(); ++i) {
+                    runs.removeFirst();
+                }
+            }
+        } finally {
+            runs.addAll(merged);
+        }
+    }
+
+    /** Closes and deletes a run that failed partway through being written */
+    private static void discard(RunWriter writer) throws IOException {
+        try {
+            writer.close();
+        } finally {
+            writer.file.delete();
+        }
+    }
+
+    /**
+     * @return An int packed with the # of its run, ordered by run then int
+     *   Flipping the sign bit makes the int's bits order the same as
+     *   unsigned as the int does as signed
+     */
+    private static long pack(int run, int i) {
+        return (long) run << 32 | ((i ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /** @return The int of a long made by pack */
+    private static int unpackInt(long packed) {
+        return (int) packed ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Merges runs, deleting them once done
+     * @param runs The runs to merge
+     * @param outp Where to send their ints in order
+     */
+    private void merge(List<Run> runs, IntSink outp) throws IOException {
+        // the heap holds one int per run, so the buffers get the memory
+        int bufferSize = (int) Math.max(MIN_BUFFER,
+                Math.min(1 << 24, 8L * this.memoryElms / (runs.size() + 1)));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            LongPQHeap heap = new LongPQHeap(runs.size());
+            for (Run run : runs) {
+                RunReader reader = new RunReader(run, bufferSize);
+                readers.add(reader);
+                if (reader.hasNext()) {
+                    heap.insert(LongPQHeap.pack(reader.next(), readers.size() - 1));
+                }
+            }
+            while (heap.size() > 0) {
+                long min = heap.extractMin();
+                outp.accept(LongPQHeap.keyOf(min));
+                RunReader reader = readers.get(LongPQHeap.indexOf(min));
+                if (reader.hasNext()) {
+                    heap.insert(LongPQHeap.pack(reader.next(), LongPQHeap.indexOf(min)));
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            for (Run run : runs) {
+                run.file.delete();
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package priorityqueue;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Program used to test the PQHeap implementation
@@ -8,33 +11,233 @@ import java.util.Scanner;
  * Modified to include DEBUG flag and functionality, and to fail on wrong sort
  * @author Rolf Fagerberg
  */
-public class Heapsort { 
+public class Heapsort {
     private static final boolean DEBUG = false;
-    
+
+    /** A source of ints in order, such as a heap to extract from */
+    private interface IntSource {
+        int next();
+    }
+
+    /**
+     * Sorts the ints on stdin, printing them in order
+     * @param args Optionally which heap to sort with; "element" for PQHeap
+     *   (the default), "int" for IntPQHeap, "long" for LongPQHeap with
+     *   each int packed with its position in the input, or any kind of
+     *   PQ known by PQFactory, such as "4-ary"
+     *   "external" sorts more ints than fit in memory through temporary
+     *   files, optionally followed by the # of ints to keep in memory and
+     *   the # of runs to merge at once
+     *   Anywhere in args, "--binary-in" and "--binary-out" read and write
+     *   ints as 4 bytes each, big-endian, instead of text, and "--binary"
+     *   does both
+     *   "--smallest K" or "--largest K" instead print only the K smallest
+     *   ints in order, or the K largest from the largest down, keeping
+     *   only those in memory as the input streams by
+     */
     public static void main(String[] args) {
-	PQ pq = new PQHeap(1000);
-
-	int n = 0;
-	Scanner sc = new Scanner(System.in);
-	while (sc.hasNextInt()) {
-            int i = sc.nextInt();
-            if (DEBUG) { System.out.println("Inserting "+i); }
-	    pq.insert(new Element(i,null));
-            if (DEBUG) { System.out.println(pq); }
-	    n++;
-        }
-        
+        boolean binaryIn = false;
+        boolean binaryOut = false;
+        int topK = -1;
+        boolean largest = false;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--binary": binaryIn = true; binaryOut = true; break;
+                case "--binary-in": binaryIn = true; break;
+                case "--binary-out": binaryOut = true; break;
+                case "--smallest":
+                case "--largest":
+                    largest = args[i].equals("--largest");
+                    topK = -1;
+                    try {
+                        if (i + 1 < args.length) { topK = Integer.parseInt(args[i + 1]); }
+                    } catch (NumberFormatException e) {
+                        // reported below, as if it were missing
+                    }
+                    if (topK < 0) {
+                        System.out.println("Missing a # of ints >= 0 for " + args[i]);
+                        System.exit(1);
+                    }
+                    ++i;
+                    break;
+                default: rest.add(args[i]);
+            }
+        }
+        IntReader inp = new IntReader(System.in, binaryIn);
+        IntWriter outp = new IntWriter(System.out, binaryOut);
+        try {
+            if (topK >= 0) {
+                sortTopK(inp, outp, topK, largest);
+            } else {
+                sort(rest, inp, outp);
+            }
+            outp.flush();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Failed to sort: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Sorts the ints of inp with the heap args ask for, writing them to outp */
+    private static void sort(List<String> args, IntReader inp, IntWriter outp)
+            throws IOException {
+        String heap = args.size() > 0 ? args.get(0) : "element";
+        if (heap.equals("int")) {
+            sortInts(inp, outp);
+            return;
+        }
+        if (heap.equals("long")) {
+            sortPacked(inp, outp);
+            return;
+        }
+        if (heap.equals("external")) {
+            int memory = args.size() > 1
+                    ? parseAtLeast(args.get(1), 1, "ints to keep in memory")
+                    : 1 << 24;
+            int fanIn = args.size() > 2 ? parseAtLeast(args.get(2), 2, "runs to merge at once") : 64;
+            sortExternal(inp, outp, memory, fanIn);
+            return;
+        }
+        String kind = heap.equals("element") ? "heap" : heap;
+        if (!PQFactory.KINDS.contains(kind)) {
+            System.out.println("Unknown heap " + heap
+                    + "; use element, int, long, external or one of " + PQFactory.KINDS);
+            System.exit(1);
+        }
+        // read everything first, so the heap is built bottom-up in O(n)
+        int[] ints = inp.readAll();
+        Element[] elms = new Element[ints.length];
+        for (int i = 0; i < ints.length; ++i) {
+            elms[i] = new Element(ints[i],null);
+        }
+	PQ pq = PQFactory.create(kind, elms);
+        if (DEBUG) { System.out.println(pq); }
+
+	int n = ints.length;
         int lastSeen = Integer.MIN_VALUE;
 	while (n > 0){
             int min = pq.extractMin().key;
             if (lastSeen > min) { // fail on wrong sort
-                System.out.println("== "+min);
-                System.exit(1);
+                failSort(outp, min);
             }
-	    System.out.println(min);
+	    outp.write(min);
             lastSeen = min;
 	    n--;
-            if (DEBUG) { System.out.println(pq); }
+            if (DEBUG) { outp.flush(); System.out.println(pq); }
 	}
    }
+
+    /**
+     * Parses a # given in args, exiting with a message if it isn't one
+     * @param arg The argument to parse
+     * @param min The smallest # allowed
+     * @param what What the # is of, for the message
+     * @return The #
+     */
+    private static int parseAtLeast(String arg, int min, String what) {
+        try {
+            int n = Integer.parseInt(arg);
+            if (n >= min) { return n; }
+        } catch (NumberFormatException e) {
+            // reported below, like a # that's too small
+        }
+        System.out.println("Expected the # of " + what + " to be >= " + min + ", got " + arg);
+        System.exit(1);
+        return min;
+    }
+
+    /** Sorts the ints of inp with an IntPQHeap, with no Element per int */
+    private static void sortInts(IntReader inp, IntWriter outp) throws IOException {
+        IntPQ pq = new IntPQHeap(inp.readAll());
+        writeInOrder(outp, pq.size(), pq::extractMin);
+    }
+
+    /**
+     * Sorts the ints of inp with a LongPQHeap, each packed with its
+     *   position in the input, which stands in for the index of its data
+     */
+    private static void sortPacked(IntReader inp, IntWriter outp) throws IOException {
+        int[] ints = inp.readAll();
+        int n = ints.length;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; ++i) {
+            packed[i] = LongPQHeap.pack(ints[i], i);
+        }
+        LongPQ pq = new LongPQHeap(packed);
+        writeInOrder(outp, n, () -> LongPQHeap.keyOf(pq.extractMin()));
+    }
+
+    /**
+     * Sorts the ints of inp with an ExternalSort, so only some of them
+     *   are ever in memory
+     * @param memoryElms The # of ints to keep in memory
+     * @param fanIn The # of runs to merge at once
+     */
+    private static void sortExternal(IntReader inp, IntWriter outp,
+            int memoryElms, int fanIn) throws IOException {
+        ExternalSort sort = new ExternalSort(memoryElms, fanIn, null);
+        int[] lastSeen = {Integer.MIN_VALUE};
+        sort.sort(inp.iterator(), min -> {
+            try {
+                if (lastSeen[0] > min) { // fail on wrong sort
+                    failSort(outp, min);
+                }
+                outp.write(min);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lastSeen[0] = min;
+        });
+        if (DEBUG) {
+            outp.flush();
+            System.out.println(sort.numRuns() + " runs, "
+                    + sort.numMergePasses() + " merge passes");
+        }
+    }
+
+    /**
+     * Writes the k smallest or largest ints of inp, only ever keeping k
+     *   of them, in a TopKHeap
+     * @param largest Whether to write the largest, from the largest down,
+     *   rather than the smallest from the smallest up
+     */
+    private static void sortTopK(IntReader inp, IntWriter outp, int k, boolean largest)
+            throws IOException {
+        TopKHeap top = new TopKHeap(k, largest);
+        while (inp.hasNext()) {
+            int i = inp.next();
+            // most ints are turned away, so only make elements for the rest
+            if (top.accepts(i)) { top.offer(new Element(i,null)); }
+        }
+        Element[] best = top.extractAll();
+        for (int i = 0; i < best.length; ++i) {
+            int key = best[i].key;
+            if (i > 0 && (largest ? key > best[i - 1].key : key < best[i - 1].key)) {
+                failSort(outp, key); // fail on wrong sort
+            }
+            outp.write(key);
+        }
+    }
+
+    /** Writes n ints taken from a queue, failing if they're out of order */
+    private static void writeInOrder(IntWriter outp, int n, IntSource extractMin)
+            throws IOException {
+        int lastSeen = Integer.MIN_VALUE;
+        for (; n > 0; --n) {
+            int min = extractMin.next();
+            if (lastSeen > min) { // fail on wrong sort
+                failSort(outp, min);
+            }
+            outp.write(min);
+            lastSeen = min;
+        }
+    }
+
+    /** Exits on an int out of order, after the ones written before it */
+    private static void failSort(IntWriter outp, int min) throws IOException {
+        outp.flush();
+        System.out.println("== "+min);
+        System.exit(1);
+    }
 }
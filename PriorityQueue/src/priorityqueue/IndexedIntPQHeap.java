@@ -0,0 +1,219 @@
+package priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of dense int IDs, each with an int key, whose keys can
+ *   be lowered and IDs deleted wherever they are in the heap
+ * This is AddressablePQHeap for elements known by IDs 0, 1, 2, ..., such as
+ *   the vertices of a graph; the ID stands in for the handle, so there is
+ *   no object per element at all
+ * The heap holds the keys and IDs in int[]'s, and the index of each ID
+ *   in the heap is kept in an int[] by ID, up to date as IDs are sifted
+ * @author Johan Fagerberg
+ */
+public class IndexedIntPQHeap {
+    /** The largest array the JVM reliably lets us allocate */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /** The key of each node of the heap */
+    private int[] keys;
+    /** The ID of each node of the heap */
+    private int[] ids;
+    /** The index in the heap of each ID, or -1 if it isn't in the queue */
+    private int[] indices;
+    private int numElms = 0;
+
+    /** @param numIds The # of IDs to make room for up front; more are added as needed */
+    public IndexedIntPQHeap(int numIds) {
+        int capacity = Math.max(numIds, 1);
+        this.keys = new int[capacity];
+        this.ids = new int[capacity];
+        this.indices = new int[capacity];
+        Arrays.fill(this.indices, -1);
+    }
+
+    /** @return The # of IDs in the queue */
+    public int size() {
+        return this.numElms;
+    }
+
+    /** @return Whether an ID is in the queue */
+    public boolean contains(int id) {
+        return id >= 0 && id < this.indices.length && this.indices[id] >= 0;
+    }
+
+    /**
+     * @return The key of an ID in the queue
+     * @throws IllegalStateException If the ID isn't in the queue
+     */
+    public int keyOf(int id) {
+        return this.keys[indexOf(id)];
+    }
+
+    /** @return The index in the heap of an ID in the queue */
+    private int indexOf(int id) {
+        if (!contains(id)) {
+            throw new IllegalStateException("ID " + id + " is not in the queue");
+        }
+        return this.indices[id];
+    }
+
+    /**
+     * Makes room for IDs up to some ID, doubling our capacity so growing
+     *   stays amortized O(1) per ID
+     * The heap never holds more IDs than there are, so it grows along
+     */
+    private void ensureRoom(int id) {
+        if (id < this.indices.length) { return; }
+        if (id >= MAX_CAPACITY) {
+            throw new IllegalArgumentException("ID " + id + " is too large");
+        }
+        int capacity = (int) Math.max(id + 1L, Math.min(2L * this.indices.length, MAX_CAPACITY));
+        int old = this.indices.length;
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.indices = Arrays.copyOf(this.indices, capacity);
+        Arrays.fill(this.indices, old, capacity, -1);
+    }
+
+    /** Puts an ID at an index of the heap */
+    private void place(int i, int key, int id) {
+        this.keys[i] = key;
+        this.ids[i] = id;
+        this.indices[id] = i;
+    }
+
+    /**
+     * Floats an ID up from a node until its parent's key is no larger
+     * @param i The index of the node, whose slot is free
+     * @param key The key of the ID
+     * @param id The ID to place
+     * @return The index the ID ended up at
+     */
+    private int siftUp(int i, int key, int id) {
+        int[] keys = this.keys;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int parentKey = keys[parent];
+            if (parentKey <= key) { break; }
+            place(i, parentKey, this.ids[parent]);
+            i = parent;
+        }
+        place(i, key, id);
+        return i;
+    }
+
+    /**
+     * Sinks an ID from a node until its key is no larger than its
+     *   children's, moving the smaller child up at each level on the way
+     * @param i The index of the node, whose slot is free
+     * @param key The key of the ID
+     * @param id The ID to place
+     */
+    private void siftDown(int i, int key, int id) {
+        int[] keys = this.keys;
+        int n = this.numElms;
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2*i + 1;
+            int childKey = keys[child];
+            int right = child + 1;
+            if (right < n && keys[right] < childKey) {
+                child = right;
+                childKey = keys[right];
+            }
+            if (key <= childKey) { break; }
+            place(i, childKey, this.ids[child]);
+            i = child;
+        }
+        place(i, key, id);
+    }
+
+    /** Removes the ID at an index, filling its slot with the last one */
+    private void remove(int i) {
+        this.indices[this.ids[i]] = -1;
+        int last = --this.numElms;
+        if (i < last) {
+            int lastKey = this.keys[last];
+            int lastId = this.ids[last];
+            // the last ID may belong above or below the hole
+            if (siftUp(i, lastKey, lastId) == i) {
+                siftDown(i, lastKey, lastId);
+            }
+        }
+    }
+
+    /**
+     * Inserts an ID into our heap
+     * @param id The ID, >= 0 and not already in the queue
+     * @param key The key of the ID
+     * @throws IllegalArgumentException If the ID is negative or already queued
+     */
+    public void insert(int id, int key) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID must be >= 0, got " + id);
+        }
+        if (contains(id)) {
+            throw new IllegalArgumentException("ID " + id + " is already in the queue");
+        }
+        ensureRoom(id);
+        siftUp(this.numElms++, key, id);
+    }
+
+    /**
+     * Lowers the key of an ID, moving it up the heap
+     * @param id The ID, in the queue
+     * @param key The new key, no larger than the current one
+     * @throws IllegalArgumentException If the key is larger
+     * @throws IllegalStateException If the ID isn't in the queue
+     */
+    public void decreaseKey(int id, int key) {
+        int i = indexOf(id);
+        if (key > this.keys[i]) {
+            throw new IllegalArgumentException("Can't decrease key " + this.keys[i]
+                    + " to " + key);
+        }
+        siftUp(i, key, id);
+    }
+
+    /**
+     * Removes an ID from the queue
+     * @throws IllegalStateException If the ID isn't in the queue
+     */
+    public void delete(int id) {
+        remove(indexOf(id));
+    }
+
+    /** @return The ID with the smallest key, without removing it */
+    public int peek() {
+        if (this.numElms == 0) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        return this.ids[0];
+    }
+
+    /**
+     * Gets the ID with the smallest key
+     * Also removes said ID from the queue
+     * @return The ID in the queue with the smallest key
+     */
+    public int extractMin() {
+        int min = peek();
+        remove(0);
+        return min;
+    }
+
+    /** @return A simple tree-like representation of the heap, as ID:key */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, layerEnd = 1; i < this.numElms; layerEnd = 2*layerEnd + 1) {
+            for (; i < layerEnd && i < this.numElms; ++i) {
+                sb.append("<").append(this.ids[i]).append(":").append(this.keys[i]).append("> ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
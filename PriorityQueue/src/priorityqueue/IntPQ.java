@@ -0,0 +1,13 @@
+package priorityqueue;
+
+/**
+ * A priority queue of plain int keys, with no data attached
+ * The sibling of PQ for when only the keys matter, so no Element needs
+ *   to be made per key
+ * @author Johan Fagerberg
+ */
+public interface IntPQ {
+    public int extractMin();
+    public void insert(int key);
+    public int size();
+}
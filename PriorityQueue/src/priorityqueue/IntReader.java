@@ -0,0 +1,182 @@
+package priorityqueue;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Reads ints from a stream, much faster than Scanner
+ * As text, ints are decimal, optionally signed, separated by any ASCII
+ *   whitespace; they're parsed straight from the bytes of a large buffer,
+ *   with no regex, String or boxing per int
+ * As binary, ints are 4 bytes each, big-endian, as written by IntWriter
+ *   or DataOutputStream
+ * Unlike Scanner, anything in the input that isn't an int is an error
+ *   rather than the end of the input
+ * The same class is in the Dictionary project, for Treesort
+ * @author Johan Fagerberg
+ */
+public class IntReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream inp;
+    private final boolean binary;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int len = 0;
+    private boolean isEnd = false;
+
+    /**
+     * @param inp The stream to read from
+     * @param binary Whether the ints are binary rather than text
+     */
+    public IntReader(InputStream inp, boolean binary) {
+        this.inp = inp;
+        this.binary = binary;
+    }
+
+    /**
+     * Makes sure there's a byte at pos, reading more if needed
+     * @return Whether there is, rather than the input having ended
+     */
+    private boolean fill() throws IOException {
+        if (this.pos < this.len) { return true; }
+        if (this.isEnd) { return false; }
+        int n;
+        do {
+            n = this.inp.read(this.buf, 0, this.buf.length);
+        } while (n == 0);
+        this.pos = 0;
+        this.len = Math.max(n, 0);
+        this.isEnd = n < 0;
+        return n > 0;
+    }
+
+    /** @return Whether there's another int to read */
+    public boolean hasNext() throws IOException {
+        if (this.binary) { return fill(); }
+        while (fill()) {
+            if (!isSpace(this.buf[this.pos])) { return true; }
+            ++this.pos;
+        }
+        return false;
+    }
+
+    /** @return Whether a byte is ASCII whitespace, which separates ints */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r'); // \t, \n, \v, \f and \r
+    }
+
+    /** @return A byte as it should be shown in an error */
+    private static String describe(byte b) {
+        if (b == '\n' || b == '\r') { return "the end of the line"; }
+        if (b > ' ' && b < 0x7F) { return "'" + (char) b + "'"; }
+        return String.format("byte 0x%02X", b & 0xFF);
+    }
+
+    /**
+     * Reads the next int
+     * @return The int
+     * @throws NoSuchElementException If the input has ended
+     * @throws IOException If the next thing in the input isn't an int
+     */
+    public int next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more ints");
+        }
+        return this.binary ? nextBinary() : nextText();
+    }
+
+    private int nextText() throws IOException {
+        boolean isNegative = this.buf[this.pos] == '-';
+        if (isNegative || this.buf[this.pos] == '+') { ++this.pos; }
+        long value = 0;
+        int numDigits = 0;
+        while (fill()) {
+            int digit = this.buf[this.pos] - '0';
+            if (digit < 0 || digit > 9) { break; }
+            value = 10 * value + digit;
+            // one past Integer.MAX_VALUE, for Integer.MIN_VALUE
+            if (value > 1L << 31) {
+                throw new IOException("Number too large for an int");
+            }
+            ++numDigits;
+            ++this.pos;
+        }
+        if (numDigits == 0 || (fill() && !isSpace(this.buf[this.pos]))) {
+            String found = fill() ? describe(this.buf[this.pos]) : "the end";
+            throw new IOException("Expected an int, found " + found);
+        }
+        value = isNegative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Number too large for an int");
+        }
+        return (int) value;
+    }
+
+    private int nextBinary() throws IOException {
+        if (this.len - this.pos >= 4) {
+            byte[] buf = this.buf;
+            int pos = this.pos;
+            this.pos += 4;
+            return buf[pos] << 24 | (buf[pos + 1] & 0xFF) << 16
+                    | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+        }
+        // the int is split between this buffer and the next
+        int value = 0;
+        for (int i = 0; i < 4; ++i) {
+            if (!fill()) {
+                throw new EOFException("Input ends in the middle of an int");
+            }
+            value = value << 8 | (this.buf[this.pos++] & 0xFF);
+        }
+        return value;
+    }
+
+    /** @return Every int left in the input, in the order they came */
+    public int[] readAll() throws IOException {
+        int[] ints = new int[1024];
+        int n = 0;
+        while (hasNext()) {
+            if (n == ints.length) { ints = Arrays.copyOf(ints, 2 * n); }
+            ints[n++] = next();
+        }
+        return Arrays.copyOf(ints, n);
+    }
+
+    /**
+     * @return The ints left in the input, for code taking an iterator
+     *   Errors reading are thrown as UncheckedIOException
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return IntReader.this.hasNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public int nextInt() {
+                try {
+                    return IntReader.this.next();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.inp.close();
+    }
+}
@@ -0,0 +1,91 @@
+package priorityqueue;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes ints to a stream, much faster than System.out.println
+ * Ints are formatted straight into the bytes of a large buffer, which is
+ *   written out only once full, instead of making a String per int and
+ *   flushing every line
+ * As text, each int is written in decimal on a line of its own; as binary,
+ *   each is 4 bytes, big-endian, as read by IntReader or DataInputStream
+ * Nothing reaches the stream until the buffer fills or flush is called
+ * The same class is in the Dictionary project, for Treesort
+ * @author Johan Fagerberg
+ */
+public class IntWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** The most bytes an int takes as text; "-2147483648\n" */
+    private static final int MAX_TEXT_LENGTH = 12;
+
+    private final OutputStream outp;
+    private final boolean binary;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int len = 0;
+
+    /**
+     * @param outp The stream to write to
+     * @param binary Whether to write the ints as binary rather than text
+     */
+    public IntWriter(OutputStream outp, boolean binary) {
+        this.outp = outp;
+        this.binary = binary;
+    }
+
+    /**
+     * Writes an int
+     * @param i The int
+     */
+    public void write(int i) throws IOException {
+        if (this.len > BUFFER_SIZE - MAX_TEXT_LENGTH) { drain(); }
+        byte[] buf = this.buf;
+        if (this.binary) {
+            buf[this.len] = (byte) (i >>> 24);
+            buf[this.len + 1] = (byte) (i >>> 16);
+            buf[this.len + 2] = (byte) (i >>> 8);
+            buf[this.len + 3] = (byte) i;
+            this.len += 4;
+            return;
+        }
+        // as a long, so Integer.MIN_VALUE can be negated too
+        long value = i;
+        if (value < 0) {
+            buf[this.len++] = '-';
+            value = -value;
+        }
+        int numDigits = 1;
+        for (long bound = 10; value >= bound && numDigits < 10; bound *= 10) {
+            ++numDigits;
+        }
+        // the digits from the last one back
+        int end = this.len + numDigits;
+        for (int pos = end - 1; pos >= this.len; --pos) {
+            buf[pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        buf[end] = '\n';
+        this.len = end + 1;
+    }
+
+    /** Writes the buffer to the stream, without flushing the stream */
+    private void drain() throws IOException {
+        this.outp.write(this.buf, 0, this.len);
+        this.len = 0;
+    }
+
+    /** Writes everything written so far to the stream, and flushes it */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        this.outp.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        this.outp.close();
+    }
+}
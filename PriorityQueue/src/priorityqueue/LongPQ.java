@@ -0,0 +1,13 @@
+package priorityqueue;
+
+/**
+ * A priority queue of plain long keys, with no data attached
+ * Data can still be carried along by packing an int key and the index of
+ *   the data into a single long, see LongPQHeap.pack
+ * @author Johan Fagerberg
+ */
+public interface LongPQ {
+    public long extractMin();
+    public void insert(long key);
+    public int size();
+}
@@ -0,0 +1,200 @@
+package priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of LongPQ using a heap of plain longs
+ * Keys are kept in a flat long[], so there is no Element per key, and
+ *   comparing two keys doesn't need to follow a pointer to either of them
+ * Keys are sifted into place by moving the ones in their way along and
+ *   writing the key once at the end, instead of swapping at every level
+ * To carry data along, pack an int key with the index of the data in an
+ *   array of its own; the packed longs order by key, then by index
+ * @author Johan Fagerberg
+ */
+public class LongPQHeap implements LongPQ {
+    /** The largest array the JVM reliably lets us allocate */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private long[] heap;
+    private int numElms = 0;
+    /** The capacity we started with, which we never shrink below */
+    private final int initialCapacity;
+    private final boolean shrink;
+
+    /** @param maxElms The # of keys to make room for up front */
+    public LongPQHeap(int maxElms) {
+        this(maxElms, false);
+    }
+    
+    /**
+     * @param maxElms The # of keys to make room for up front
+     * @param shrink Whether to give memory back as the heap empties
+     */
+    public LongPQHeap(int maxElms, boolean shrink) {
+        this.heap = new long[maxElms];
+        this.initialCapacity = maxElms;
+        this.shrink = shrink;
+    }
+    
+    /**
+     * Builds a heap of some keys at once, in O(n)
+     * @param keys The keys, which are copied, so the array can be reused
+     */
+    public LongPQHeap(long[] keys) {
+        this(keys.length);
+        insertAll(keys, 0, keys.length);
+    }
+    
+    /**
+     * Packs a key and an index into a long, ordered by key then index
+     * @param key The key, in the upper 32 bits
+     * @param index The index of the key's data, in the lower 32 bits
+     * @return The packed long
+     */
+    public static long pack(int key, int index) {
+        return (long) key << 32 | (index & 0xFFFFFFFFL);
+    }
+    
+    /** @return The key of a long made by pack */
+    public static int keyOf(long packed) {
+        return (int) (packed >> 32);
+    }
+    
+    /** @return The index of a long made by pack */
+    public static int indexOf(long packed) {
+        return (int) packed;
+    }
+    
+    /**
+     * Gets the smallest key
+     * Also removes said key from the queue
+     * @return The smallest key in the queue
+     */
+    @Override
+    public long extractMin() {
+        if (this.numElms == 0) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        long min = this.heap[0];
+        --this.numElms;
+        // the last key fills the hole at the top, and sinks from there
+        if (this.numElms > 0) {
+            siftDown(0, this.heap[this.numElms]);
+        }
+        // halving only once we're down to a quarter keeps it amortized O(1)
+        if (this.shrink && this.numElms < this.heap.length / 4
+                && this.heap.length / 2 >= this.initialCapacity) {
+            this.heap = Arrays.copyOf(this.heap, this.heap.length / 2);
+        }
+        return min;
+    }
+    
+    /**
+     * Sinks a key from a node of the heap until it is no larger than its
+     *   children, moving the smaller child up at each level on the way
+     * @param i The index of the node, whose slot is free
+     * @param key The key to place
+     */
+    private void siftDown(int i, long key) {
+        long[] heap = this.heap;
+        int n = this.numElms;
+        // nodes from n/2 and on have no children
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2*i + 1;
+            long childKey = heap[child];
+            int right = child + 1;
+            if (right < n && heap[right] < childKey) {
+                child = right;
+                childKey = heap[right];
+            }
+            if (key <= childKey) { break; }
+            heap[i] = childKey;
+            i = child;
+        }
+        heap[i] = key;
+    }
+    
+    /**
+     * Inserts a key into our heap
+     * @param key The key to insert
+     */
+    @Override
+    public void insert(long key) {
+        ensureRoom(1);
+        long[] heap = this.heap;
+        int i = this.numElms;
+        // move parents larger than our key down, until we find its place
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            long parentKey = heap[parent];
+            if (parentKey <= key) { break; }
+            heap[i] = parentKey;
+            i = parent;
+        }
+        heap[i] = key;
+        ++this.numElms;
+    }
+    
+    /**
+     * Makes room for at least some more keys, doubling our capacity
+     *   if that's enough so growing stays amortized O(1) per key
+     * @param extra The # of keys to make room for
+     */
+    private void ensureRoom(int extra) {
+        if (this.heap.length - this.numElms >= extra) { return; }
+        if (MAX_CAPACITY - this.numElms < extra) {
+            throw new IllegalStateException("Priority queue is full");
+        }
+        int capacity = this.heap.length <= MAX_CAPACITY / 2
+                ? Math.max(2 * this.heap.length, 16)
+                : MAX_CAPACITY;
+        this.heap = Arrays.copyOf(this.heap, Math.max(capacity, this.numElms + extra));
+    }
+    
+    /**
+     * Inserts many keys at once
+     * Adding at least as many keys as are already in the heap is done by
+     *   sifting down bottom-up, in O(n) for the whole heap, rather than by
+     *   one O(log n) insert per key
+     * @param keys The array holding the keys
+     * @param off The index of the first key to insert
+     * @param len The # of keys to insert
+     */
+    public void insertAll(long[] keys, int off, int len) {
+        if (len < this.numElms) {
+            for (int i = off; i < off + len; ++i) {
+                insert(keys[i]);
+            }
+            return;
+        }
+        ensureRoom(len);
+        System.arraycopy(keys, off, this.heap, this.numElms, len);
+        this.numElms += len;
+        // every node from the last parent up to the root, so both subtrees
+        //   of a node are in heap order by the time we reach it
+        for (int i = (this.numElms >>> 1) - 1; i >= 0; --i) {
+            siftDown(i, this.heap[i]);
+        }
+    }
+    
+    /** @return The # of keys in the queue */
+    @Override
+    public int size() {
+        return this.numElms;
+    }
+    
+    /** @return A simple tree-like representation of the heap */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, layerEnd = 1; i < this.numElms; layerEnd = 2*layerEnd + 1) {
+            for (; i < layerEnd && i < this.numElms; ++i) {
+                sb.append(this.heap[i]).append(" ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
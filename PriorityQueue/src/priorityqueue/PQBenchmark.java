@@ -0,0 +1,331 @@
+package priorityqueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the PQ implementations of PQFactory on large inputs shaped like
+ *   the ones in test/; increasing, decreasing, all the same, random
+ *   positive and random negative keys
+ * For every size, distribution and kind of PQ it times n inserts, a
+ *   bottom-up build of the same n elements, and n extracts, keeping the
+ *   best of a few repeats, and prints the ns per element of each
+ * With --hold MAX_DELAY it instead runs the hold model of an event
+ *   simulation, where the queue holds n pending events and each step
+ *   extracts the next one and schedules a new one up to MAX_DELAY ticks
+ *   after it; keys are monotone, so this also compares a BucketQueue
+ *   ("bucket") with a span of MAX_DELAY, and prints the ns per step
+ * With --mix insert it instead runs an insert-heavy mix of 4 inserts per
+ *   extract, and with --mix meld a sharded one, where SHARDS queues each
+ *   take a batch of inserts, are melded into one main queue, and half of
+ *   what came in is extracted from it; a PairingHeap melds in O(1), other
+ *   kinds by extracting every element of a shard and inserting it into
+ *   the main queue; both print the ns per element inserted, and the meld
+ *   mix also the part of it spent melding
+ * Usage: PQBenchmark [--sizes 1000000,10000000] [--kinds heap,4-ary]
+ *   [--dists increasing,random] [--repeats 3] [--hold 1000]
+ *   [--mix insert|meld]
+ * 10^8 elements take around 4 GB of heap, so run that with -Xmx6g or so
+ * @author Johan Fagerberg
+ */
+public class PQBenchmark {
+    /** The name of every distribution of keys we generate */
+    private static final List<String> DISTS = Arrays.asList(
+            "increasing", "decreasing", "same", "positive", "negative");
+
+    /** The # of queues the meld mix shards its inserts over */
+    private static final int SHARDS = 16;
+    /** The # of inserts each shard of the meld mix takes between melds */
+    private static final int SHARD_BATCH = 1024;
+
+    /** Something each run feeds its result into, so it can't be optimized away */
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        List<Integer> sizes = Arrays.asList(1000000);
+        // every kind unless asked for some
+        List<String> kinds = null;
+        List<String> dists = DISTS;
+        int repeats = 3;
+        int maxDelay = -1;
+        String mix = null;
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (i + 1 == args.length) { usage("Missing a value for " + arg); }
+            String value = args[++i];
+            switch (arg) {
+                case "--sizes":
+                    sizes = new ArrayList<>();
+                    for (String size : value.split(",")) {
+                        sizes.add((int) Double.parseDouble(size));
+                    }
+                    break;
+                case "--kinds":
+                    kinds = Arrays.asList(value.split(","));
+                    break;
+                case "--dists":
+                    dists = Arrays.asList(value.split(","));
+                    break;
+                case "--repeats":
+                    repeats = Integer.parseInt(value);
+                    break;
+                case "--hold":
+                    maxDelay = Integer.parseInt(value);
+                    break;
+                case "--mix":
+                    if (!value.equals("insert") && !value.equals("meld")) {
+                        usage("Unknown mix " + value);
+                    }
+                    mix = value;
+                    break;
+                default:
+                    usage("Unknown option " + arg);
+            }
+        }
+        if (maxDelay >= 0) {
+            if (kinds == null) {
+                kinds = new ArrayList<>(PQFactory.KINDS);
+                kinds.add("bucket");
+            }
+            hold(sizes, kinds, repeats, maxDelay);
+            return;
+        }
+        if (mix != null) {
+            // random keys, so no radix
+            if (kinds == null) { kinds = Arrays.asList("heap", "4-ary", "pairing"); }
+            mix(sizes, kinds, repeats, mix);
+            return;
+        }
+        if (kinds == null) { kinds = PQFactory.KINDS; }
+        for (String kind : kinds) {
+            PQFactory.create(kind); // fail on unknown kinds before running anything
+        }
+
+        // a run over a small input first, so the JIT has compiled everything
+        for (String kind : kinds) {
+            run(kind, generate("positive", 100000, new Random(1)));
+        }
+        System.out.printf("%-12s %11s %-8s %12s %12s %12s%n",
+                "dist", "n", "kind", "insert ns", "build ns", "extract ns");
+        for (int n : sizes) {
+            for (String dist : dists) {
+                Element[] elms = generate(dist, n, new Random(n));
+                for (String kind : kinds) {
+                    long[] best = run(kind, elms);
+                    for (int r = 1; r < repeats; ++r) {
+                        long[] times = run(kind, elms);
+                        for (int t = 0; t < best.length; ++t) {
+                            best[t] = Math.min(best[t], times[t]);
+                        }
+                    }
+                    System.out.printf("%-12s %11d %-8s %12.1f %12.1f %12.1f%n",
+                            dist, n, kind, (double) best[0] / n,
+                            (double) best[1] / n, (double) best[2] / n);
+                }
+            }
+        }
+    }
+
+    /** Runs the hold model for every size and kind, printing the results */
+    private static void hold(List<Integer> sizes, List<String> kinds, int repeats, int maxDelay) {
+        for (String kind : kinds) {
+            createHold(kind, maxDelay); // fail on unknown kinds before running anything
+        }
+        for (String kind : kinds) {
+            runHold(createHold(kind, maxDelay), 100000, maxDelay);
+        }
+        System.out.printf("%11s %9s %-8s %12s%n", "pending", "maxDelay", "kind", "step ns");
+        for (int n : sizes) {
+            for (String kind : kinds) {
+                long best = Long.MAX_VALUE;
+                for (int r = 0; r < repeats; ++r) {
+                    best = Math.min(best, runHold(createHold(kind, maxDelay), n, maxDelay));
+                }
+                System.out.printf("%11d %9d %-8s %12.1f%n", n, maxDelay, kind,
+                        (double) best / (2L * n));
+            }
+        }
+    }
+
+    /** @return An empty PQ of a kind, or a BucketQueue spanning maxDelay for "bucket" */
+    private static PQ createHold(String kind, int maxDelay) {
+        return kind.equals("bucket") ? new BucketQueue(0, maxDelay) : PQFactory.create(kind);
+    }
+
+    /**
+     * Times the hold model on a PQ; n events scheduled from time 0, then
+     *   2n steps of extracting the next event and scheduling a new one
+     * @return The nanoseconds taken by the steps
+     */
+    private static long runHold(PQ pq, int n, int maxDelay) {
+        Random random = new Random(n);
+        for (int i = 0; i < n; ++i) {
+            pq.insert(new Element(random.nextInt(maxDelay + 1), null));
+        }
+        long start = System.nanoTime();
+        int now = 0;
+        for (long step = 2L * n; step > 0; --step) {
+            Element next = pq.extractMin();
+            if (next.key < now) {
+                throw new IllegalStateException("Extracted " + next.key + " after " + now);
+            }
+            now = next.key;
+            // reusing the element, as a simulation would its event
+            next.key = now + random.nextInt(maxDelay + 1);
+            pq.insert(next);
+        }
+        long time = System.nanoTime() - start;
+        sink += now;
+        return time;
+    }
+
+    /** Runs a mix for every size and kind, printing the results */
+    private static void mix(List<Integer> sizes, List<String> kinds, int repeats, String mix) {
+        for (String kind : kinds) {
+            PQFactory.create(kind); // fail on unknown kinds before running anything
+        }
+        for (String kind : kinds) {
+            runMix(kind, mix, generate("positive", 100000, new Random(1)));
+        }
+        System.out.printf("%-8s %11s %-8s %12s %12s%n", "mix", "n", "kind", "total ns", "meld ns");
+        for (int n : sizes) {
+            Element[] elms = generate("positive", n, new Random(n));
+            for (String kind : kinds) {
+                long[] best = runMix(kind, mix, elms);
+                for (int r = 1; r < repeats; ++r) {
+                    long[] times = runMix(kind, mix, elms);
+                    for (int t = 0; t < best.length; ++t) {
+                        best[t] = Math.min(best[t], times[t]);
+                    }
+                }
+                System.out.printf("%-8s %11d %-8s %12.1f %12s%n", mix, n, kind, (double) best[0] / n,
+                        mix.equals("meld") ? String.format("%.1f", (double) best[1] / n) : "-");
+            }
+        }
+    }
+
+    /**
+     * Times a mix on one kind of PQ
+     * @param elms The elements to insert, in order
+     * @return The nanoseconds taken by the whole mix, and by melding alone
+     */
+    private static long[] runMix(String kind, String mix, Element[] elms) {
+        long start = System.nanoTime();
+        PQ pq = PQFactory.create(kind);
+        long sum = 0;
+        long meldTime = 0;
+        if (mix.equals("insert")) {
+            for (int i = 0; i < elms.length; ++i) {
+                pq.insert(elms[i]);
+                if (i % 4 == 3) { sum += pq.extractMin().key; }
+            }
+        } else {
+            PQ[] shards = new PQ[SHARDS];
+            int[] shardSizes = new int[SHARDS];
+            for (int s = 0; s < SHARDS; ++s) {
+                shards[s] = PQFactory.create(kind);
+            }
+            int i = 0;
+            while (i < elms.length) {
+                int round = 0;
+                for (int s = 0; s < SHARDS; ++s) {
+                    for (int b = 0; b < SHARD_BATCH && i < elms.length; ++b, ++i) {
+                        shards[s].insert(elms[i]);
+                        ++shardSizes[s];
+                        ++round;
+                    }
+                }
+                long meldStart = System.nanoTime();
+                for (int s = 0; s < SHARDS; ++s) {
+                    if (pq instanceof PairingHeap) {
+                        ((PairingHeap) pq).meld((PairingHeap) shards[s]);
+                    } else {
+                        for (; shardSizes[s] > 0; --shardSizes[s]) {
+                            pq.insert(shards[s].extractMin());
+                        }
+                    }
+                    shardSizes[s] = 0;
+                }
+                meldTime += System.nanoTime() - meldStart;
+                for (int e = 0; e < round / 2; ++e) {
+                    sum += pq.extractMin().key;
+                }
+            }
+        }
+        long time = System.nanoTime() - start;
+        sink += sum;
+        return new long[] {time, meldTime};
+    }
+
+    private static void usage(String error) {
+        System.out.println(error);
+        System.out.println("Usage: PQBenchmark [--sizes N,...] [--kinds KIND,...]"
+                + " [--dists DIST,...] [--repeats N] [--hold MAX_DELAY]"
+                + " [--mix insert|meld]");
+        System.out.println("  kinds: " + PQFactory.KINDS);
+        System.out.println("  dists: " + DISTS);
+        System.exit(1);
+    }
+
+    /**
+     * Generates n elements with keys of a distribution
+     * @param dist The name of the distribution
+     * @param n The # of elements
+     * @param random Where random keys come from
+     * @return The elements
+     */
+    private static Element[] generate(String dist, int n, Random random) {
+        Element[] elms = new Element[n];
+        for (int i = 0; i < n; ++i) {
+            int key;
+            switch (dist) {
+                case "increasing": key = i; break;
+                case "decreasing": key = n - i; break;
+                case "same": key = 42; break;
+                case "positive": key = random.nextInt(Integer.MAX_VALUE); break;
+                case "negative": key = -random.nextInt(Integer.MAX_VALUE); break;
+                default:
+                    usage("Unknown distribution " + dist);
+                    return null;
+            }
+            elms[i] = new Element(key, null);
+        }
+        return elms;
+    }
+
+    /**
+     * Times one kind of PQ on some elements
+     * @return The nanoseconds taken by inserting every element one at a
+     *   time, by building a PQ of all of them at once, and by extracting
+     *   them all again
+     */
+    private static long[] run(String kind, Element[] elms) {
+        long[] times = new long[3];
+        long start = System.nanoTime();
+        PQ pq = PQFactory.create(kind);
+        for (Element elm : elms) {
+            pq.insert(elm);
+        }
+        times[0] = System.nanoTime() - start;
+        pq = null; // let it go before building the next one
+
+        start = System.nanoTime();
+        pq = PQFactory.create(kind, elms);
+        times[1] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int lastSeen = Integer.MIN_VALUE;
+        for (int i = 0; i < elms.length; ++i) {
+            int min = pq.extractMin().key;
+            if (lastSeen > min) {
+                throw new IllegalStateException(kind + " extracted " + min + " after " + lastSeen);
+            }
+            lastSeen = min;
+        }
+        times[2] = System.nanoTime() - start;
+        sink += lastSeen;
+        return times;
+    }
+}
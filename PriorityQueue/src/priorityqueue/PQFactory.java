@@ -0,0 +1,65 @@
+package priorityqueue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Makes a PQ of any of our implementations by name, so programs like
+ *   Heapsort and PQBenchmark can be pointed at any of them
+ * @author Johan Fagerberg
+ */
+public class PQFactory {
+    /** The name of every kind of PQ we can make, PQHeap's first */
+    public static final List<String> KINDS = Collections.unmodifiableList(Arrays.asList(
+            "heap", "2-ary", "4-ary", "8-ary", "16-ary", "radix", "pairing"));
+
+    private PQFactory() {}
+
+    /**
+     * Makes an empty PQ
+     * @param kind The name of the implementation; "heap" for PQHeap,
+     *   "D-ary" for a DaryHeap with D children per node, "radix" for a
+     *   RadixHeap, which only takes monotone keys, or "pairing" for a
+     *   PairingHeap
+     * @return The PQ
+     * @throws IllegalArgumentException If we don't know the kind
+     */
+    public static PQ create(String kind) {
+        if (kind.equals("heap")) { return new PQHeap(16); }
+        if (kind.equals("radix")) { return new RadixHeap(); }
+        if (kind.equals("pairing")) { return new PairingHeap(); }
+        if (kind.endsWith("-ary")) {
+            try {
+                return new DaryHeap(Integer.parseInt(kind.substring(0, kind.length() - 4)));
+            } catch (NumberFormatException e) {
+                // fall through to the error below
+            }
+        }
+        throw new IllegalArgumentException("Unknown kind of priority queue " + kind
+                + "; use one of " + KINDS);
+    }
+
+    /**
+     * Makes a PQ of some elements at once, bottom-up where the
+     *   implementation can
+     * @param kind The name of the implementation, as for create
+     * @param elms The elements, which are copied, so the array can be reused
+     * @return The PQ
+     */
+    public static PQ create(String kind, Element[] elms) {
+        PQ pq = create(kind);
+        if (pq instanceof PQHeap) {
+            ((PQHeap) pq).insertAll(elms, 0, elms.length);
+        } else if (pq instanceof DaryHeap) {
+            ((DaryHeap) pq).insertAll(elms, 0, elms.length);
+        } else if (pq instanceof PairingHeap) {
+            ((PairingHeap) pq).insertAll(elms, 0, elms.length);
+        } else {
+            for (Element elm : elms) {
+                pq.insert(elm);
+            }
+        }
+        return pq;
+    }
+}
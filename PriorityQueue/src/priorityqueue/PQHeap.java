@@ -1,14 +1,45 @@
 package priorityqueue;
 
+import java.util.Arrays;
+
 /**
  * An implementation of PQ using a heap data structure
+ * The heap grows by doubling when full, so inserts stay amortized O(log n),
+ *   and can optionally shrink by half once it's down to a quarter full
  * @author Johan Fagerberg
  */
 public class PQHeap implements PQ {
-    private final Element[] heap;
+    /** The largest array the JVM reliably lets us allocate */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private Element[] heap;
     private int numElms = 0;
+    /** The capacity we started with, which we never shrink below */
+    private final int initialCapacity;
+    private final boolean shrink;
+
+    /** @param maxElms The # of elements to make room for up front */
     public PQHeap(int maxElms) {
+        this(maxElms, false);
+    }
+    
+    /**
+     * @param maxElms The # of elements to make room for up front
+     * @param shrink Whether to give memory back as the heap empties
+     */
+    public PQHeap(int maxElms, boolean shrink) {
         this.heap = new Element[maxElms];
+        this.initialCapacity = maxElms;
+        this.shrink = shrink;
+    }
+    
+    /**
+     * Builds a heap of some elements at once, in O(n)
+     * @param elms The elements, which are copied, so the array can be reused
+     */
+    public PQHeap(Element[] elms) {
+        this(elms.length);
+        insertAll(elms, 0, elms.length);
     }
     
     /** @return The index of a nodes parent, given the index of the node */
@@ -50,6 +81,53 @@ public class PQHeap implements PQ {
         }
     }
 
+    /**
+     * Makes room for at least some more elements, doubling our capacity
+     *   if that's enough so growing stays amortized O(1) per element
+     * @param extra The # of elements to make room for
+     */
+    private void ensureRoom(int extra) {
+        if (this.heap.length - this.numElms >= extra) { return; }
+        if (MAX_CAPACITY - this.numElms < extra) {
+            throw new IllegalStateException("Priority queue is full");
+        }
+        int capacity = this.heap.length <= MAX_CAPACITY / 2
+                ? Math.max(2 * this.heap.length, 16)
+                : MAX_CAPACITY;
+        this.heap = Arrays.copyOf(this.heap, Math.max(capacity, this.numElms + extra));
+    }
+    
+    /**
+     * Inserts many elements at once
+     * Adding at least as many elements as are already in the heap is done
+     *   by restoring heap order bottom-up, in O(n) for the whole heap,
+     *   rather than by one O(log n) insert per element
+     * @param elms The array holding the elements
+     * @param off The index of the first element to insert
+     * @param len The # of elements to insert
+     */
+    public void insertAll(Element[] elms, int off, int len) {
+        if (len < this.numElms) {
+            for (int i = off; i < off + len; ++i) {
+                insert(elms[i]);
+            }
+            return;
+        }
+        ensureRoom(len);
+        System.arraycopy(elms, off, this.heap, this.numElms, len);
+        this.numElms += len;
+        // every node from the last parent up to the root, so both subtrees
+        //   of a node are in heap order by the time we reach it
+        for (int i = getParent(this.numElms - 1); i >= 0; --i) {
+            heapify(i);
+        }
+    }
+    
+    /** @return The # of elements in the queue */
+    public int size() {
+        return this.numElms;
+    }
+
     /**
      * Gets the element with the smallest key
      * Also removes said element from the queue
@@ -69,6 +147,11 @@ public class PQHeap implements PQ {
         --this.numElms;
         // then restore heap order
         this.heapify(0);
+        // halving only once we're down to a quarter keeps it amortized O(1)
+        if (this.shrink && this.numElms < this.heap.length / 4
+                && this.heap.length / 2 >= this.initialCapacity) {
+            this.heap = Arrays.copyOf(this.heap, this.heap.length / 2);
+        }
         return min;
     }
     
@@ -79,6 +162,7 @@ public class PQHeap implements PQ {
     @Override
     public void insert(Element elm) {
         // insert the element at the end of our heap
+        ensureRoom(1);
         int i = this.numElms;
         this.heap[i] = elm;
         // then run from our new elm and up through its parents, restoring order
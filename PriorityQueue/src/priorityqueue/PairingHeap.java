@@ -0,0 +1,245 @@
+package priorityqueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An implementation of PQ using a pairing heap, which can meld two heaps
+ *   into one in O(1)
+ * The heap is a tree of nodes with the smallest key at the root; linking
+ *   two trees makes the root with the larger key the first child of the
+ *   other, so inserting and melding are a single comparison each
+ * Extracting removes the root and links its children in pairs from left
+ *   to right, then links the pairs from right to left, in O(log n)
+ *   amortized; both passes are loops, so a long list of children can't
+ *   overflow the stack
+ * Nodes of extracted elements are kept and reused by later inserts, so a
+ *   heap that stays around the same size stops allocating altogether;
+ *   never more are kept than the heap holds elements, so a heap that
+ *   drains lets go of them
+ *   Melding hands every node of the other heap over to this one, so nodes
+ *   never have to be copied
+ * Like the other heaps, a pairing heap is not thread-safe; give each thread
+ *   its own and meld them together on one thread
+ * Keys are read when an element is inserted, so changing the key of an
+ *   element in the queue doesn't move it
+ * @author Johan Fagerberg
+ */
+public class PairingHeap implements PQ {
+    /** A node of the tree, or a free one waiting to be reused */
+    private static final class Node {
+        int key;
+        Element elm;
+        /** The first child of the node */
+        Node child;
+        /** The next child of the node's parent, or the next free node */
+        Node sibling;
+    }
+
+    private Node root;
+    private int numElms = 0;
+    /** The first of a list of free nodes, linked by sibling */
+    private Node free;
+    /** The # of free nodes, at most numElms */
+    private int numFree = 0;
+
+    /** @return The # of elements in the queue */
+    public int size() {
+        return this.numElms;
+    }
+
+    /** @return A node for an element, reused if we have a free one */
+    private Node node(Element elm) {
+        Node node = this.free;
+        if (node != null) {
+            this.free = node.sibling;
+            node.sibling = null;
+            --this.numFree;
+        } else {
+            node = new Node();
+        }
+        node.key = elm.key;
+        node.elm = elm;
+        return node;
+    }
+
+    /**
+     * Links two trees into one, the root with the larger key becoming the
+     *   first child of the other
+     * @return The root of the linked tree
+     */
+    private static Node link(Node a, Node b) {
+        if (b.key < a.key) {
+            Node tmp = a;
+            a = b;
+            b = tmp;
+        }
+        b.sibling = a.child;
+        a.child = b;
+        return a;
+    }
+
+    /**
+     * Inserts an element into our heap
+     * @param elm The element to insert
+     */
+    @Override
+    public void insert(Element elm) {
+        Node node = node(elm);
+        this.root = this.root == null ? node : link(this.root, node);
+        ++this.numElms;
+    }
+
+    /**
+     * Inserts many elements at once
+     * The elements are linked in pairs, then the pairs in pairs and so on,
+     *   making a balanced tree that's linked to ours once, rather than each
+     *   becoming a child of our root and waiting for an extract to pair it
+     * @param elms The array holding the elements
+     * @param off The index of the first element to insert
+     * @param len The # of elements to insert
+     */
+    public void insertAll(Element[] elms, int off, int len) {
+        if (len == 0) { return; }
+        // the trees to link, linked by sibling
+        Node first = null;
+        for (int i = off + len - 1; i >= off; --i) {
+            Node node = node(elms[i]);
+            node.sibling = first;
+            first = node;
+        }
+        // each round links neighbours, halving the # of trees
+        while (first.sibling != null) {
+            Node linked = null;
+            Node last = null;
+            while (first != null) {
+                Node a = first;
+                Node b = a.sibling;
+                if (b == null) {
+                    first = null;
+                } else {
+                    first = b.sibling;
+                    a.sibling = null;
+                    b.sibling = null;
+                    a = link(a, b);
+                }
+                if (last == null) { linked = a; } else { last.sibling = a; }
+                last = a;
+            }
+            first = linked;
+        }
+        this.root = this.root == null ? first : link(this.root, first);
+        this.numElms += len;
+    }
+
+    /**
+     * Moves every element of another heap into this one, in O(1)
+     * The other heap is left empty, but can still be used
+     * @param other The heap to meld into this one
+     * @throws IllegalArgumentException If other is this heap
+     */
+    public void meld(PairingHeap other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Can't meld a heap with itself");
+        }
+        if (other.root != null) {
+            this.root = this.root == null ? other.root : link(this.root, other.root);
+            this.numElms += other.numElms;
+            other.root = null;
+            other.numElms = 0;
+        }
+        // the other heap is empty, so it keeps no free nodes
+        other.free = null;
+        other.numFree = 0;
+    }
+
+    /** @return The element with the smallest key, without removing it */
+    public Element peek() {
+        if (this.root == null) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        return this.root.elm;
+    }
+
+    /**
+     * Gets the element with the smallest key
+     * Also removes said element from the queue
+     * @return The element in the queue with the smallest key
+     */
+    @Override
+    public Element extractMin() {
+        if (this.root == null) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        Node min = this.root;
+        this.root = combine(min.child);
+        --this.numElms;
+        Element elm = min.elm;
+        min.elm = null;
+        min.child = null;
+        min.sibling = this.free;
+        this.free = min;
+        ++this.numFree;
+        // there were no more free nodes than elements before, so at most two go
+        while (this.numFree > this.numElms) {
+            Node next = this.free.sibling;
+            this.free.sibling = null;
+            this.free = next;
+            --this.numFree;
+        }
+        return elm;
+    }
+
+    /**
+     * Links a list of sibling trees into one by two-pass pairing
+     * @param first The first tree of the list
+     * @return The root of the linked tree, or null if there were none
+     */
+    private static Node combine(Node first) {
+        // first pass, left to right; link pairs, keeping the results in a
+        //   list in reverse order, linked by sibling
+        Node pairs = null;
+        while (first != null) {
+            Node a = first;
+            Node b = a.sibling;
+            if (b == null) {
+                first = null;
+            } else {
+                first = b.sibling;
+                b.sibling = null;
+                a = link(a, b);
+            }
+            a.sibling = pairs;
+            pairs = a;
+        }
+        // second pass, right to left; link each pair into the result
+        Node result = null;
+        while (pairs != null) {
+            Node next = pairs.sibling;
+            pairs.sibling = null;
+            result = result == null ? pairs : link(result, pairs);
+            pairs = next;
+        }
+        return result;
+    }
+
+    /** @return A simple tree-like representation of the heap, a line per depth */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        List<Node> layer = new ArrayList<>();
+        if (this.root != null) { layer.add(this.root); }
+        while (!layer.isEmpty()) {
+            List<Node> next = new ArrayList<>();
+            for (Node node : layer) {
+                sb.append(node.elm).append(" ");
+                for (Node child = node.child; child != null; child = child.sibling) {
+                    next.add(child);
+                }
+            }
+            sb.append("\n");
+            layer = next;
+        }
+        return sb.toString();
+    }
+}
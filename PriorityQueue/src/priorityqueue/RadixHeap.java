@@ -0,0 +1,139 @@
+package priorityqueue;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of PQ for monotone keys, using a radix heap
+ * Monotone means no key inserted is smaller than the last key extracted,
+ *   as with the distances of Dijkstra's algorithm or the times of events
+ *   in a simulation; inserting a smaller one throws
+ * Elements are kept in 33 buckets by the highest bit their key differs
+ *   from the last extracted key in, so bucket 0 holds keys equal to it
+ *   and bucket b keys differing from it first in bit b-1
+ * Extracting from an empty bucket 0 finds the smallest key in the first
+ *   non-empty bucket, makes it the last extracted key and moves that
+ *   bucket's elements to lower buckets; an element only ever moves down,
+ *   so each costs O(log C) over its life, for C the span of the keys,
+ *   with no comparisons between elements at all
+ * Keys are read when an element is inserted, so changing the key of an
+ *   element in the queue doesn't move it
+ * @author Johan Fagerberg
+ */
+public class RadixHeap implements PQ {
+    /** The # of buckets; one for equal keys and one per bit of an int */
+    private static final int NUM_BUCKETS = 33;
+
+    /** The keys in each bucket, flipped to order as unsigned, see toUnsigned */
+    private final int[][] keys = new int[NUM_BUCKETS][];
+    private final Element[][] elms = new Element[NUM_BUCKETS][];
+    private final int[] sizes = new int[NUM_BUCKETS];
+    /** The last extracted key, as unsigned; 0 before any, allowing all keys */
+    private int last = 0;
+    private int numElms = 0;
+
+    public RadixHeap() {
+        for (int b = 0; b < NUM_BUCKETS; ++b) {
+            this.keys[b] = new int[4];
+            this.elms[b] = new Element[4];
+        }
+    }
+
+    /** @return The # of elements in the queue */
+    public int size() {
+        return this.numElms;
+    }
+
+    /**
+     * @return A key flipped in its sign bit, so the keys order as unsigned
+     *   ints the same way they do as signed
+     */
+    private static int toUnsigned(int key) {
+        return key ^ Integer.MIN_VALUE;
+    }
+
+    /** @return The bucket of an unsigned key, relative to the last extracted one */
+    private int bucketOf(int key) {
+        return 32 - Integer.numberOfLeadingZeros(key ^ this.last);
+    }
+
+    /** Adds an element to a bucket */
+    private void push(int b, int key, Element elm) {
+        int size = this.sizes[b];
+        if (size == this.keys[b].length) {
+            this.keys[b] = Arrays.copyOf(this.keys[b], 2 * size);
+            this.elms[b] = Arrays.copyOf(this.elms[b], 2 * size);
+        }
+        this.keys[b][size] = key;
+        this.elms[b][size] = elm;
+        this.sizes[b] = size + 1;
+    }
+
+    /**
+     * Inserts an element into our heap
+     * @param elm The element to insert
+     * @throws IllegalArgumentException If its key is smaller than the last
+     *   key extracted
+     */
+    @Override
+    public void insert(Element elm) {
+        int key = toUnsigned(elm.key);
+        if (Integer.compareUnsigned(key, this.last) < 0) {
+            throw new IllegalArgumentException("Key " + elm.key
+                    + " is smaller than the last extracted key " + toUnsigned(this.last)
+                    + "; a radix heap needs monotone keys");
+        }
+        push(bucketOf(key), key, elm);
+        ++this.numElms;
+    }
+
+    /**
+     * Gets the element with the smallest key
+     * Also removes said element from the queue
+     * @return The element in the queue with the smallest key
+     */
+    @Override
+    public Element extractMin() {
+        if (this.numElms == 0) {
+            throw new ArrayIndexOutOfBoundsException("Priority queue is empty");
+        }
+        if (this.sizes[0] == 0) {
+            int b = 1;
+            while (this.sizes[b] == 0) { ++b; }
+            int[] keys = this.keys[b];
+            Element[] elms = this.elms[b];
+            int size = this.sizes[b];
+            int min = keys[0];
+            for (int i = 1; i < size; ++i) {
+                if (Integer.compareUnsigned(keys[i], min) < 0) { min = keys[i]; }
+            }
+            // every key of the bucket now differs from the last key in a
+            //   lower bit than before, so they all move to lower buckets
+            this.last = min;
+            this.sizes[b] = 0;
+            for (int i = 0; i < size; ++i) {
+                push(bucketOf(keys[i]), keys[i], elms[i]);
+                elms[i] = null;
+            }
+        }
+        int i = --this.sizes[0];
+        Element min = this.elms[0][i];
+        this.elms[0][i] = null;
+        --this.numElms;
+        return min;
+    }
+
+    /** @return The elements of each non-empty bucket, bucket by bucket */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int b = 0; b < NUM_BUCKETS; ++b) {
+            if (this.sizes[b] == 0) { continue; }
+            sb.append(b).append(": ");
+            for (int i = 0; i < this.sizes[b]; ++i) {
+                sb.append(this.elms[b][i]).append(" ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package priorityqueue;
+
+/**
+ * Keeps the k elements with the smallest, or the largest, keys out of a
+ *   stream of any length, in O(k) memory and O(log k) time per element
+ * The kept elements are in a heap with the worst of them at the root; an
+ *   element better than the root replaces it and sinks into place, and
+ *   any other element is turned away after a single comparison
+ * To keep the smallest keys the heap orders by the bitwise complement of
+ *   each key, which reverses their order without overflowing, so the same
+ *   min-heap serves both
+ * Keys are read when an element is offered, so changing the key of a kept
+ *   element doesn't move it
+ * @author Johan Fagerberg
+ */
+public class TopKHeap {
+    private final int k;
+    private final boolean largest;
+    /** The keys of the heap, complemented when keeping the smallest */
+    private final int[] keys;
+    private final Element[] elms;
+    private int numElms = 0;
+
+    /**
+     * @param k The # of elements to keep, >= 0
+     * @param largest Whether to keep the largest keys rather than the smallest
+     */
+    public TopKHeap(int k, boolean largest) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be >= 0, got " + k);
+        }
+        this.k = k;
+        this.largest = largest;
+        this.keys = new int[k];
+        this.elms = new Element[k];
+    }
+
+    /** @return The # of elements kept so far, at most k */
+    public int size() {
+        return this.numElms;
+    }
+
+    /** @return A key as ordered in the heap, smallest being the worst kept */
+    private int heapKey(int key) {
+        return this.largest ? key : ~key;
+    }
+
+    /**
+     * @param key The key of an element
+     * @return Whether an element with the key would be kept if offered now,
+     *   so callers can skip making elements that wouldn't be
+     */
+    public boolean accepts(int key) {
+        return this.numElms < this.k || (this.k > 0 && heapKey(key) > this.keys[0]);
+    }
+
+    /**
+     * Offers an element, keeping it if it's among the best k so far
+     * Of elements with equal keys, the ones offered first are kept
+     * @param elm The element
+     * @return Whether it was kept
+     */
+    public boolean offer(Element elm) {
+        int key = heapKey(elm.key);
+        if (this.numElms < this.k) {
+            // float it up to its place among the kept ones
+            int i = this.numElms++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (this.keys[parent] <= key) { break; }
+                this.keys[i] = this.keys[parent];
+                this.elms[i] = this.elms[parent];
+                i = parent;
+            }
+            this.keys[i] = key;
+            this.elms[i] = elm;
+            return true;
+        }
+        if (this.k == 0 || key <= this.keys[0]) { return false; }
+        // it replaces the worst kept one, at the root
+        siftDown(key, elm, this.numElms);
+        return true;
+    }
+
+    /** Sinks an element from the root among the first n of the heap */
+    private void siftDown(int key, Element elm, int n) {
+        int[] keys = this.keys;
+        int i = 0;
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2*i + 1;
+            int childKey = keys[child];
+            int right = child + 1;
+            if (right < n && keys[right] < childKey) {
+                child = right;
+                childKey = keys[right];
+            }
+            if (key <= childKey) { break; }
+            keys[i] = childKey;
+            this.elms[i] = this.elms[child];
+            i = child;
+        }
+        keys[i] = key;
+        this.elms[i] = elm;
+    }
+
+    /**
+     * Takes every kept element out, best first; smallest key first when
+     *   keeping the smallest, largest first when keeping the largest
+     * Afterwards the heap is empty, and can be offered a new stream
+     * @return The kept elements
+     */
+    public Element[] extractAll() {
+        Element[] best = new Element[this.numElms];
+        // the root is the worst, so they're taken out from the back
+        while (this.numElms > 0) {
+            int last = --this.numElms;
+            best[last] = this.elms[0];
+            if (last > 0) { siftDown(this.keys[last], this.elms[last], last); }
+            this.elms[last] = null;
+        }
+        return best;
+    }
+}